@@ -2,14 +2,25 @@ package de.christian_steinert.practice_dates.practicedates;
 
 import de.christian_steinert.practice_dates.practicedates.controllers.CalendarInfoMapperImpl;
 import de.christian_steinert.practice_dates.practicedates.controllers.DayInfoMapperImpl;
+import de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion.TibetanMonthTableGenerator;
 import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.nativex.hint.InitializationHint;
+import org.springframework.nativex.hint.InitializationTime;
+import org.springframework.nativex.hint.NativeHint;
 import org.springframework.nativex.hint.TypeHint;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 
 // help Spring Native / graalVM to find generated mapstruct classes
 @TypeHint(types = { DayInfoMapperImpl.class, CalendarInfoMapperImpl.class } )
+// help Spring Native / graalVM to find the generated Tibetan month table and initialize it while building the image
+// so that the precalculated data is part of the image heap
+@NativeHint(
+        types = @TypeHint(typeNames = TibetanMonthTableGenerator.GENERATED_CLASS_NAME),
+        initialization = @InitializationHint(
+                typeNames = { TibetanMonthTableGenerator.GENERATED_CLASS_NAME, "de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion.TibetanMonthTableGenerator" },
+                initTime = InitializationTime.BUILD))
 @Configuration
 public class WebConfig extends WebMvcAutoConfiguration implements WebMvcConfigurer {
 }
@@ -9,12 +9,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import javax.servlet.http.HttpServletRequest;
 import java.nio.charset.StandardCharsets;
@@ -37,11 +39,25 @@ public class TibDatesController {
     @Autowired
     private IcalService icalService;
 
+    /**
+     * Make sure that a requested calendar system exists
+     *
+     * @param system name of the calendar system
+     * @throws ResponseStatusException with status 400 if there is no calendar system with that name
+     */
+    private void checkCalendarSystem(String system) {
+        if (!datesService.isCalendarSystem(system)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown calendar system: " + system);
+        }
+    }
+
     @GetMapping("/dates/{year}/{month}")
-    public List<DayInfoDto> getMonthInfo(@PathVariable int year, @PathVariable int month) {
+    public List<DayInfoDto> getMonthInfo(@PathVariable int year, @PathVariable int month,
+                                         @RequestParam(defaultValue = PracticeDatesService.DEFAULT_CALENDAR_SYSTEM) String system) {
+        checkCalendarSystem(system);
         var result = new ArrayList<DayInfoDto>();
 
-        var dayInfos = datesService.getMonthInfo(year, month);
+        var dayInfos = datesService.getMonthInfo(year, month, system);
         for (var dayInfo : dayInfos) {
             result.add(dayInfoMapper.convert(dayInfo));
         }
@@ -50,17 +66,20 @@ public class TibDatesController {
 
     @GetMapping("/dates")
     public List<DayInfoDto> getDateRangeInfo(@DateTimeFormat(pattern = "yyyyMMdd") @RequestParam(required = true) LocalDate from,
-                                             @DateTimeFormat(pattern = "yyyyMMdd") @RequestParam(required = true) LocalDate to) {
+                                             @DateTimeFormat(pattern = "yyyyMMdd") @RequestParam(required = true) LocalDate to,
+                                             @RequestParam(defaultValue = PracticeDatesService.DEFAULT_CALENDAR_SYSTEM) String system) {
 
-        return getDateRangeInfo2(from, to);
+        return getDateRangeInfo2(from, to, system);
     }
 
     @GetMapping("/dates/{from}-{to}")
     public List<DayInfoDto> getDateRangeInfo2(@DateTimeFormat(pattern = "yyyyMMdd") @PathVariable LocalDate from,
-                                              @DateTimeFormat(pattern = "yyyyMMdd") @PathVariable LocalDate to) {
+                                              @DateTimeFormat(pattern = "yyyyMMdd") @PathVariable LocalDate to,
+                                              @RequestParam(defaultValue = PracticeDatesService.DEFAULT_CALENDAR_SYSTEM) String system) {
+        checkCalendarSystem(system);
         var result = new ArrayList<DayInfoDto>();
 
-        var dayInfos = datesService.getDateRangeInfo(from, to);
+        var dayInfos = datesService.getDateRangeInfo(from, to, system);
         for (var dayInfo : dayInfos) {
             result.add(dayInfoMapper.convert(dayInfo));
         }
@@ -80,7 +99,10 @@ public class TibDatesController {
 
 
     @GetMapping("/ical")
-    public ResponseEntity<ByteArrayResource> getIcal(@RequestParam(required = false) String calendars, HttpServletRequest request) {
+    public ResponseEntity<ByteArrayResource> getIcal(@RequestParam(required = false) String calendars,
+                                                     @RequestParam(defaultValue = PracticeDatesService.DEFAULT_CALENDAR_SYSTEM) String system,
+                                                     HttpServletRequest request) {
+        checkCalendarSystem(system);
         var practiceTypes = new ArrayList<PracticeType>();
 
         if (calendars != null) {
@@ -99,7 +121,7 @@ public class TibDatesController {
             }
         }
 
-        String result = icalService.getPracticeDatesAsIcal(request, practiceTypes);
+        String result = icalService.getPracticeDatesAsIcal(request, practiceTypes, system);
 
         byte[] resultBytes = result.getBytes(StandardCharsets.UTF_8);
         ByteArrayResource resource = new ByteArrayResource(resultBytes);
@@ -5,18 +5,31 @@ import lombok.*;
 import java.time.LocalDate;
 import java.util.List;
 
-@AllArgsConstructor
-@Data
-public final class DayInfo {
-  private LocalDate date;
-
-  private int tibMonth;
-
-  private int tibDay;
-
-  private int repeatedTibDay;
-
-  private int repeatedTibMonth;
+/**
+ * Tibetan date and practices of a Gregorian day. Instances are immutable, so they can be shared between requests.
+ */
+@Value
+public class DayInfo {
+  LocalDate date;
+
+  int tibMonth;
+
+  int tibDay;
+
+  int repeatedTibDay;
+
+  int repeatedTibMonth;
+
+  public DayInfo(LocalDate date, int tibMonth, int tibDay, int repeatedTibDay, int repeatedTibMonth,
+                 List<PracticeInfo> practices) {
+    this.date = date;
+    this.tibMonth = tibMonth;
+    this.tibDay = tibDay;
+    this.repeatedTibDay = repeatedTibDay;
+    this.repeatedTibMonth = repeatedTibMonth;
+    // does not copy lists that are immutable already
+    this.practices = List.copyOf(practices);
+  }
 
   public int getYear() {
       return date.getYear();
@@ -34,6 +47,6 @@ public final class DayInfo {
     return date.getDayOfWeek().getValue();
   }
 
-  private List<PracticeInfo> practices;
+  List<PracticeInfo> practices;
 
 }
@@ -2,138 +2,481 @@ package de.christian_steinert.practice_dates.practicedates.dates_service;
 
 import de.christian_steinert.practice_dates.practicedates.dates_service.PracticeInfo.PracticeType;
 import de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion.TibDate;
+import de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion.TibetanCalendarSystem;
 import de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion.TibetanDateCalculation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.Month;
-import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 public class PracticeDatesService {
-    TibetanDateCalculation dateCalc;
+    private static final Logger log = LoggerFactory.getLogger(PracticeDatesService.class);
+
+    /** calendar system that is used if no system is requested */
+    public static final String DEFAULT_CALENDAR_SYSTEM = TibetanCalendarSystem.PHUGPA;
+
+    /**
+     * practices of each Tibetan day by tibMonth, tibDay, monthFlag, doubleDayFlag and isSkippedDay (see
+     * getPracticeKey); the practices only depend on the Tibetan day, so they are determined once for all days
+     */
+    private static final List<List<PracticeInfo>> PRACTICE_TABLE = createPracticeTable();
+
+    /** maximum number of years whose days are kept in yearInfos */
+    private static final int MAX_CACHED_YEARS = 16;
+
+    /**
+     * minimum number of requested days of a year for which the whole year is calculated and kept in yearInfos;
+     * shorter parts of years that are not kept already are calculated on their own
+     */
+    private static final int MIN_DAYS_FOR_YEAR_INFO = 180;
+
+    /** number of days that are calculated by each parallel task when the day store is created */
+    private static final int DAY_STORE_CHUNK_SIZE = 4096;
+
+    /** names of the calendar systems that are registered (see TibetanCalendarSystem) */
+    private final List<String> calendarSystems = TibetanCalendarSystem.getNames();
+
+    /** date calculations of the calendar systems that have been requested so far, by name of the system */
+    private final Map<String, TibetanDateCalculation> dateCalcs = new ConcurrentHashMap<>();
+
+    /**
+     * the days of the most recently used years by calendar system and year (see getYearInfo); the days are immutable,
+     * so they are shared by all requests. Access only while synchronized on the map.
+     */
+    private final Map<String, List<DayInfo>> yearInfos = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<DayInfo>> eldest) {
+            return size() > MAX_CACHED_YEARS;
+        }
+    };
+
+    /**
+     * precalculated days of the frequently used rabjungs of the default calendar system or null if the day store is
+     * not enabled
+     */
+    private volatile PracticeDayStore dayStore;
 
     public PracticeDatesService() {
-        dateCalc = new TibetanDateCalculation();
+        // the default system is needed anyway, so its calculation is created right away; its month tables are
+        // calculated with the first query
+        getDateCalculation(DEFAULT_CALENDAR_SYSTEM);
     }
 
-    Date toDateObj(LocalDate d) {
-        var date = java.util.Date.from(d.atStartOfDay()
-                .atZone(ZoneId.systemDefault())
-                .toInstant());
-        return date;
+    /**
+     * Is there a calendar system with the given name?
+     *
+     * @param system name of the calendar system
+     * @return true if the system can be used for the queries of this service
+     */
+    public boolean isCalendarSystem(String system) {
+        return calendarSystems.contains(system);
+    }
+
+    /**
+     * Get the date calculation of a calendar system. It is created when the system is requested for the first time
+     * and keeps its own month tables.
+     *
+     * @param system name of the calendar system
+     * @return the date calculation
+     * @throws IllegalArgumentException if there is no calendar system with that name
+     */
+    TibetanDateCalculation getDateCalculation(String system) {
+        return dateCalcs.computeIfAbsent(system, name -> TibetanCalendarSystem.forName(name).createCalculation());
+    }
+
+    /**
+     * Enable or disable the day store. While it is enabled, the Tibetan dates and practices of all days of the
+     * frequently used rabjungs of the default calendar system are kept in memory (about 5 MB as reported by
+     * PracticeDayStore.getMemorySize(), which is logged when the store is created), so that days are not calculated on
+     * request.
+     *
+     * @param enabled true to create the day store, false to drop it
+     */
+    @Value("${practicedates.day-store.enabled:false}")
+    public void setDayStoreEnabled(boolean enabled) {
+        if (!enabled) {
+            dayStore = null;
+        } else if (dayStore == null) {
+            var start = System.nanoTime();
+            var store = createDayStore(getDateCalculation(DEFAULT_CALENDAR_SYSTEM));
+            log.info("Day store with {} days from {} created in {} ms, using {} KB", store.size(),
+                    LocalDate.ofEpochDay(store.getFirstDay()), (System.nanoTime() - start) / 1_000_000,
+                    store.getMemorySize() / 1024);
+            dayStore = store;
+        }
+    }
+
+    /**
+     * Calculate the Tibetan dates and practices of all days of the frequently used rabjungs
+     */
+    private static PracticeDayStore createDayStore(TibetanDateCalculation dateCalc) {
+        var firstDay = dateCalc.getMonthTable(dateCalc.getFirstRabjung()).getStartDay(0);
+        var lastMonths = dateCalc.getMonthTable(dateCalc.getLastRabjung());
+        var size = lastMonths.getStartDay(lastMonths.size()) - firstDay;
+
+        var packedDates = new long[size];
+        var practices = new ArrayList<List<PracticeInfo>>(Collections.nCopies(size, null));
+
+        // the days are calculated in chunks in parallel, each chunk with its own cursor
+        IntStream.range(0, (size + DAY_STORE_CHUNK_SIZE - 1) / DAY_STORE_CHUNK_SIZE).parallel().forEach(chunk -> {
+            var start = chunk * DAY_STORE_CHUNK_SIZE;
+            var end = Math.min(size, start + DAY_STORE_CHUNK_SIZE);
+            var cursor = dateCalc.getDayCursor(firstDay + start);
+
+            for (int i = start; i < end; i++) {
+                var packedDate = cursor.getPackedDate();
+                packedDates[i] = packedDate;
+                var tibDate = TibDate.of(packedDate);
+                var skippedDate = TibDate.of(cursor.getSkippedDate());
+                // each task only replaces its own elements of the list
+                practices.set(i, getPractices(LocalDate.ofEpochDay(firstDay + i), tibDate, skippedDate));
+                cursor.next();
+            }
+        });
+
+        return new PracticeDayStore(firstDay, packedDates, practices);
+    }
+
+    /**
+     * @return the day store of a calendar system or null if there is none
+     */
+    private PracticeDayStore getDayStore(String system) {
+        return DEFAULT_CALENDAR_SYSTEM.equals(system) ? dayStore : null;
     }
 
     public List<DayInfo> getMonthInfo(int year, int month) {
+        return getMonthInfo(year, month, DEFAULT_CALENDAR_SYSTEM);
+    }
+
+    public List<DayInfo> getMonthInfo(int year, int month, String system) {
         var from = LocalDate.of(year, month, 1);
         var to = LocalDate.of(year, month, from.lengthOfMonth());
 
 
-        return getDateRangeInfo(from, to);
+        return getDateRangeInfo(from, to, system);
     }
 
     public List<DayInfo> getDateRangeInfo(LocalDate from, LocalDate to) {
+        return getDateRangeInfo(from, to, DEFAULT_CALENDAR_SYSTEM);
+    }
+
+    public List<DayInfo> getDateRangeInfo(LocalDate from, LocalDate to, String system) {
         var result = new ArrayList<DayInfo>();
-        var date = from;
+        if (from.isAfter(to)) {
+            return result;
+        }
 
-        while (!date.isAfter(to)) {
+        // the days are taken from the (shared) days of the years of the range if the year is known already or a large
+        // part of it is requested; otherwise only the requested days are calculated
+        for (int year = from.getYear(); year <= to.getYear(); year++) {
+            var yearFrom = (year == from.getYear()) ? from : LocalDate.ofYearDay(year, 1);
+            var yearTo = (year == to.getYear()) ? to : LocalDate.of(year, 12, 31);
+            var dayCount = yearTo.getDayOfYear() - yearFrom.getDayOfYear() + 1;
+            var days = (dayCount >= MIN_DAYS_FOR_YEAR_INFO) ? getYearInfo(year, system) : getCachedYearInfo(year, system);
+            if (days != null) {
+                result.addAll(days.subList(yearFrom.getDayOfYear() - 1, yearTo.getDayOfYear()));
+            } else {
+                result.addAll(createDateRangeInfo(yearFrom, yearTo, system));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the days of a range of Gregorian dates on which at least one of the given practice types occurs. If the
+     * range is part of the day store, only the days of those practice types are looked at.
+     *
+     * @param from first day of the range
+     * @param to last day of the range
+     * @param system name of the calendar system
+     * @param practiceTypes the requested practice types
+     * @return the days with all their practices, sorted by date
+     * @throws IllegalArgumentException if there is no calendar system with that name
+     */
+    public List<DayInfo> getPracticeDays(LocalDate from, LocalDate to, String system,
+                                         Collection<PracticeType> practiceTypes) {
+        var store = getDayStore(system);
+        if (store == null || from.isAfter(to) || !store.contains(from.toEpochDay()) || !store.contains(to.toEpochDay())) {
+            // look at each day of the range
+            return getDateRangeInfo(from, to, system).stream()
+                    .filter(day -> day.getPractices().stream().anyMatch(practice -> practiceTypes.contains(practice.getType())))
+                    .collect(Collectors.toList());
+        }
+
+        var epochDays = practiceTypes.stream().distinct()
+                .flatMapToInt(type -> IntStream.of(store.getDaysOfType(type, from.toEpochDay(), to.toEpochDay())))
+                .sorted()
+                .distinct()
+                .toArray();
+
+        var result = new ArrayList<DayInfo>(epochDays.length);
+        for (var epochDay : epochDays) {
+            result.add(createDayInfo(LocalDate.ofEpochDay(epochDay), TibDate.of(store.getPackedDate(epochDay)),
+                    store.getPractices(epochDay)));
+        }
+        return result;
+    }
+
+    /**
+     * Get the days of a Gregorian year. The most recently used years are kept, so that repeated requests for the same
+     * years do not need to calculate anything.
+     *
+     * @param year the Gregorian year
+     * @param system name of the calendar system
+     * @return an immutable list with all days of the year
+     * @throws IllegalArgumentException if there is no calendar system with that name
+     */
+    private List<DayInfo> getYearInfo(int year, String system) {
+        var days = getCachedYearInfo(year, system);
+        if (days != null) {
+            return days;
+        }
+
+        // calculated without holding the lock; if another thread calculates the same year, both results are equal
+        days = createDateRangeInfo(LocalDate.ofYearDay(year, 1), LocalDate.of(year, 12, 31), system);
+        synchronized (yearInfos) {
+            yearInfos.put(system + '/' + year, days);
+        }
+        return days;
+    }
+
+    /**
+     * Get the days of a Gregorian year if they are among the most recently used years
+     *
+     * @param year the Gregorian year
+     * @param system name of the calendar system
+     * @return an immutable list with all days of the year or null if the year is not kept
+     */
+    private List<DayInfo> getCachedYearInfo(int year, String system) {
+        synchronized (yearInfos) {
+            return yearInfos.get(system + '/' + year);
+        }
+    }
+
+    /**
+     * Calculate the days of a range of Gregorian dates
+     *
+     * @return an immutable list with the days
+     */
+    private List<DayInfo> createDateRangeInfo(LocalDate from, LocalDate to, String system) {
+        var result = new ArrayList<DayInfo>();
+        var date = from;
 
-            var tibDate = dateCalc.getTibetanDateForGregorianDate(toDateObj(date));
-            var nextTibDate = dateCalc.getTibetanDateForGregorianDate(toDateObj(date.plusDays(1)));
-            var practices = getPractices(date, tibDate, false);
-
-            if (nextTibDate.tibDay - tibDate.tibDay == 2) {
-                // the next Tibetan day number will be skipped.
-                // all practices for that day number should be done on the current day.
-                var skippedTibDate = new TibDate(tibDate.rabjung, tibDate.tibYear, tibDate.tibMonth, tibDate.monthFlag, tibDate.tibDay + 1);
-                skippedTibDate.isSkippedDay = true;
-                skippedTibDate.doubleDayFlag = 0;
-                practices.addAll(getPractices(date, skippedTibDate, true));
+        var store = getDayStore(system);
+        if (store != null && store.contains(from.toEpochDay()) && store.contains(to.toEpochDay())) {
+            // the Tibetan dates and practices have been determined in advance
+            while (!date.isAfter(to)) {
+                var epochDay = date.toEpochDay();
+                result.add(createDayInfo(date, TibDate.of(store.getPackedDate(epochDay)), store.getPractices(epochDay)));
+                date = date.plusDays(1);
             }
+            return List.copyOf(result);
+        }
 
-            var dateInfo = new DayInfo(date, tibDate.tibMonth, tibDate.tibDay,
-                    tibDate.doubleDayFlag, tibDate.monthFlag, practices);
+        // walk through the range with a cursor: each day is converted only once
+        var cursor = getDateCalculation(system).getDayCursor(from.toEpochDay());
 
-            result.add(dateInfo);
+        while (!date.isAfter(to)) {
+            result.add(createDayInfo(date, TibDate.of(cursor.getPackedDate()), TibDate.of(cursor.getSkippedDate())));
             date = date.plusDays(1);
+            cursor.next();
         }
 
-        return result;
+        return List.copyOf(result);
     }
 
-    private List<PracticeInfo> getPractices(LocalDate date, TibDate tibDate, boolean isSkippedDay) {
-        var result = new ArrayList<PracticeInfo>();
+    /**
+     * Create the information about a day
+     *
+     * @param date Gregorian date of the day
+     * @param tibDate Tibetan date of the day
+     * @param skippedDate Tibetan day that is skipped after this day or null
+     */
+    private static DayInfo createDayInfo(LocalDate date, TibDate tibDate, TibDate skippedDate) {
+        return createDayInfo(date, tibDate, getPractices(date, tibDate, skippedDate));
+    }
+
+    /**
+     * Create the information about a day whose practices are known
+     *
+     * @param date Gregorian date of the day
+     * @param tibDate Tibetan date of the day
+     * @param practices the practices of the day; the list must not be modified
+     */
+    private static DayInfo createDayInfo(LocalDate date, TibDate tibDate, List<PracticeInfo> practices) {
+        return new DayInfo(date, tibDate.tibMonth, tibDate.tibDay,
+                tibDate.doubleDayFlag, tibDate.monthFlag, practices);
+    }
 
-        if(isSkippedDay == false && date.getMonth().equals(Month.JULY) && date.getDayOfMonth() == 6 ) {
-            result.add(new PracticeInfo(PracticeType.OTHER, "Dalai Lama Birthday", "The 6th of July is the birthday of His Holiness the 14th Dalai Lama."));
+    /**
+     * Get the practices of a day
+     *
+     * @param date Gregorian date of the day
+     * @param tibDate Tibetan date of the day
+     * @param skippedDate Tibetan day that is skipped after this day or null
+     * @return the practices of the day; the list must not be modified
+     */
+    private static List<PracticeInfo> getPractices(LocalDate date, TibDate tibDate, TibDate skippedDate) {
+        var practices = getPractices(date, tibDate);
+
+        if (skippedDate != null) {
+            // the next Tibetan day number will be skipped (possibly the 1st day of the next month).
+            // all practices for that day number should be done on the current day.
+            practices = new ArrayList<>(practices);
+            practices.addAll(getPractices(skippedDate.tibMonth, skippedDate.tibDay, skippedDate.monthFlag, 0, true));
         }
+        return practices;
+    }
 
+    /**
+     * Get the practices of a day without the practices of a skipped day
+     *
+     * @param date Gregorian date of the day
+     * @param tibDate Tibetan date of the day
+     * @return the practices of the day; the list must not be modified
+     */
+    private static List<PracticeInfo> getPractices(LocalDate date, TibDate tibDate) {
+        var practices = getPractices(tibDate.tibMonth, tibDate.tibDay, tibDate.monthFlag, tibDate.doubleDayFlag, false);
+
+        if (date.getMonth().equals(Month.JULY) && date.getDayOfMonth() == 6) {
+            // the only practice that depends on the Gregorian date
+            var result = new ArrayList<PracticeInfo>();
+            result.add(new PracticeInfo(PracticeType.OTHER, "Dalai Lama Birthday",
+                    getDayInfo(tibDate.tibMonth, tibDate.tibDay, tibDate.monthFlag, tibDate.doubleDayFlag, false)
+                            + "The 6th of July is the birthday of His Holiness the 14th Dalai Lama."));
+            result.addAll(practices);
+            return result;
+        }
+        return practices;
+    }
 
-        if (tibDate.doubleDayFlag != 1) {
+    /**
+     * Get the practices of a Tibetan day from the practice table
+     *
+     * @return the practices of the day; the list must not be modified
+     */
+    private static List<PracticeInfo> getPractices(int tibMonth, int tibDay, int monthFlag, int doubleDayFlag, boolean isSkippedDay) {
+        return PRACTICE_TABLE.get(getPracticeKey(tibMonth, tibDay, monthFlag, doubleDayFlag, isSkippedDay));
+    }
+
+    /**
+     * Get the position of the practices of a Tibetan day in the practice table
+     */
+    private static int getPracticeKey(int tibMonth, int tibDay, int monthFlag, int doubleDayFlag, boolean isSkippedDay) {
+        return (((((tibMonth - 1) * 30 + (tibDay - 1)) * 3 + monthFlag) * 3 + doubleDayFlag) * 2) + (isSkippedDay ? 1 : 0);
+    }
+
+    /**
+     * Create the practice table: the practices of each possible Tibetan day, with their descriptions
+     */
+    private static List<List<PracticeInfo>> createPracticeTable() {
+        var result = new ArrayList<List<PracticeInfo>>();
+        var practices = new HashMap<PracticeInfo, PracticeInfo>();
+        for (int tibMonth = 1; tibMonth <= 12; tibMonth++) {
+            for (int tibDay = 1; tibDay <= 30; tibDay++) {
+                for (int monthFlag = 0; monthFlag <= 2; monthFlag++) {
+                    for (int doubleDayFlag = 0; doubleDayFlag <= 2; doubleDayFlag++) {
+                        result.add(createPractices(tibMonth, tibDay, monthFlag, doubleDayFlag, false, practices));
+                        result.add(createPractices(tibMonth, tibDay, monthFlag, doubleDayFlag, true, practices));
+                    }
+                }
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * Determine the practices of a Tibetan day according to the rules for the practice days
+     *
+     * @param isSkippedDay true if the day is skipped; its practices are done on the previous day
+     * @param practices the practices that have been created so far; equal practices are taken from there so that
+     *                  they are shared
+     * @return the practices of the day
+     */
+    private static List<PracticeInfo> createPractices(int tibMonth, int tibDay, int monthFlag, int doubleDayFlag, boolean isSkippedDay,
+                                                      Map<PracticeInfo, PracticeInfo> practices) {
+        var result = new ArrayList<PracticeInfo>();
+
+
+        if (doubleDayFlag != 1) {
             // on doubled days practices are usually done on the second day so we skip the first date of a double day.
 
             /**** BUDDHA DAYS *****/
-            if (tibDate.monthFlag != 2) {
+            if (monthFlag != 2) {
                 // in doubled months, buddha days seem to be in the first of the two months
 
-                if (tibDate.tibMonth == 1 && tibDate.tibDay == 1) {
+                if (tibMonth == 1 && tibDay == 1) {
                     result.add(new PracticeInfo(PracticeType.OTHER, "Tibetan New Year", "Beginning of new Tibetan year. During the first fifteen days, fifteen 'Miracle Days' are celebrated which commemorate fifteen miracles that the Buddha is said to have performed."));
                 }
 
-                if (tibDate.tibMonth == 1 && tibDate.tibDay == 15) {
+                if (tibMonth == 1 && tibDay == 15) {
                     // 15th of 1st Tibetan month -> Day of Miracles
                     result.add(new PracticeInfo(PracticeType.BUDDHA_DAY, "Day of Miracles", "Day of Miracles (Chötrul Düchen). The fifteenth day of a new Tibetan year is the the culmination of the fifteen 'Miracle Days' which commemorate fifteen miracles that the Buddha is said to have performed. The Day of Miracles is one of four important Tibetan holidays related to the Buddha."));
                 }
 
-                if (tibDate.tibMonth == 4 && tibDate.tibDay == 15) {
+                if (tibMonth == 4 && tibDay == 15) {
                     // 15th of 4th Tibetan month -> Saka Dawa
                     result.add(new PracticeInfo(PracticeType.BUDDHA_DAY, "Buddha's Birth, Enlightenment and Paranirvana", "Celebration of the Buddha's birth, enlightenment and paranirvana (Saka Dawa Düchen). Saka Dawa is one of four important Tibetan holidays related to the Buddha."));
                 }
 
-                if (tibDate.tibMonth == 6 && tibDate.tibDay == 4) {
+                if (tibMonth == 6 && tibDay == 4) {
                     // 4th of 6th Tibetan month -> Turning of the Wheel
                     result.add(new PracticeInfo(PracticeType.BUDDHA_DAY, "Buddha's first teaching", "Celebration of Buddha's first 'turning of the wheel of Dharma' (Chökhor Düchen). On this day the first teaching of the Buddha is celebrated. Chökhor Düchen is one of four important Tibetan holidays related to the Buddha."));
                     result.add(new PracticeInfo(PracticeType.PRECEPTS, "Precepts", "Buddha days and eclipses are considered to be particularly powerful days for taking the Eight Mahayana Precepts."));
                 }
 
-                if (tibDate.tibMonth == 9 && tibDate.tibDay == 22) {
+                if (tibMonth == 9 && tibDay == 22) {
                     // 4th of 6th Tibetan month -> Descent from Tushita
                     result.add(new PracticeInfo(PracticeType.BUDDHA_DAY, "Buddha's descent from Tushita", "Celebration of Buddha's descent from the god realm of Tushita (Lhabab Düchen) after the Buddha had taught the Dharma to his mother there. Lhabap Düchen is one of four important Tibetan holidays related to the Buddha."));
                     result.add(new PracticeInfo(PracticeType.PRECEPTS, "Precepts", "Buddha days and eclipses are considered to be particularly powerful days for taking the Eight Mahayana Precepts."));
                 }
 
-                if (tibDate.tibMonth == 10 && tibDate.tibDay == 25) {
+                if (tibMonth == 10 && tibDay == 25) {
                         result.add(new PracticeInfo(PracticeType.OTHER, "Je Tsongkhapa Day", "Je Tsongkhapa Day (Ganden Ngamchö). On the 25th day of 10th Tibetan lunar month the parinivarna of Je Tsongkhapa is commemorated."));
                 }
 
-                if (tibDate.tibMonth == 5 && tibDate.tibDay == 15) {
+                if (tibMonth == 5 && tibDay == 15) {
                     result.add(new PracticeInfo(PracticeType.OTHER, "Guru Rinpoche Universal Prayer Day", "Universal Prayer Day (Dzamling Chi Sang, also called 'Universal incense day'). On the 15th day of the 5th Tibetan lunar month the taming of local Tibetan deities by Padmasambhava and the founding of Samye Monastery, the first Buddhist Monastery in Tibet, are celebrated."));
                 }
             }
 
             /**** regular practice days ****/
             String doubleMonthSpecialTsokWarning = "";
-            if(tibDate.tibMonth >= 11) {
-                if (tibDate.monthFlag == 1) {
-                    doubleMonthSpecialTsokWarning = String.format(" NOTE: During this year the %dth Tibetan month is doubled. It is not clear if the special Tsog day is on this day or one lunar month later.", tibDate.tibMonth);
-                } else if (tibDate.monthFlag == 2) {
-                    doubleMonthSpecialTsokWarning = String.format(" NOTE: During this year the %dth Tibetan month is doubled. It is not clear if the special Tsog day is on this day or one lunar month earlier.", tibDate.tibMonth);
+            if(tibMonth >= 11) {
+                if (monthFlag == 1) {
+                    doubleMonthSpecialTsokWarning = String.format(" NOTE: During this year the %dth Tibetan month is doubled. It is not clear if the special Tsog day is on this day or one lunar month later.", tibMonth);
+                } else if (monthFlag == 2) {
+                    doubleMonthSpecialTsokWarning = String.format(" NOTE: During this year the %dth Tibetan month is doubled. It is not clear if the special Tsog day is on this day or one lunar month earlier.", tibMonth);
                 }
             }
 
-            switch (tibDate.tibDay) {
+            switch (tibDay) {
                 case 8:
                     result.add(new PracticeInfo(PracticeType.TARA, "Tara", "The eighth day of each Tibetan lunar month is considered to be a particularly suitable day for performing Tara pujas."));
                     result.add(new PracticeInfo(PracticeType.MEDICINE_BUDDHA, "Medicine Buddha", "The eighth day of each Tibetan lunar month is considered to be a particularly suitable day for performing Medicine Buddha pujas."));
-                    if (tibDate.tibMonth != 1 || tibDate.monthFlag == 2) {
+                    if (tibMonth != 1 || monthFlag == 2) {
                         result.add(new PracticeInfo(PracticeType.PRECEPTS, "Precepts", "The eighth day of each Tibetan lunar month is considered to be a powerful day for taking the Eight Mahayana Precepts."));
                     }
                     break;
                 case 10:
-                    if(tibDate.tibMonth == 12) {
+                    if(tibMonth == 12) {
                         result.add(new PracticeInfo(PracticeType.TSOG, "Tsog (Special Heruka Tsog)", "Tsog offering (Daka Tsog). The tenth day of each Tibetan month is one of the two days each month when Tsog offerings should be performed. The Tsog offering on the 10th day of the 12th Tibetan month is considered to be one of the two most important Tsog days of the entire year. Lama Zopa Rinpoche explained: ' The Tibetan 12th month is a special time for father tantra, a special time for Chakrasamvara, and a special month to offer Chakrasamvara tsog.' Phabongkha Rinpoche writes: '...the twenty-fifth day of the eleventh month is the holy time of the Mother, and the tenth day of the twelfth month is the holy time of the Father'." + doubleMonthSpecialTsokWarning));
                     } else {
                         result.add(new PracticeInfo(PracticeType.TSOG, "Tsog", "Tsog offering (Daka Tsog). The tenth day of each Tibetan month is one of the two days each month when Tsog offerings should be performed."));
@@ -142,12 +485,12 @@ public class PracticeDatesService {
                 case 15:
                     result.add(new PracticeInfo(PracticeType.MOON, "Full Moon", "Full moon days are considered to be powerful days for positive practices."));
                     result.add(new PracticeInfo(PracticeType.MEDICINE_BUDDHA, "Medicine Buddha", "The fifteenth day of each Tibetan lunar month is considered to be a particularly suitable day for performing Medicine Buddha pujas."));
-                    if (tibDate.tibMonth != 1 || tibDate.monthFlag == 2) {
+                    if (tibMonth != 1 || monthFlag == 2) {
                         result.add(new PracticeInfo(PracticeType.PRECEPTS, "Precepts", "Full moon days are considered to be powerful days for taking the Eight Mahayana Precepts."));
                     }
                     break;
                 case 25:
-                    if(tibDate.tibMonth == 11) {
+                    if(tibMonth == 11) {
                         result.add(new PracticeInfo(PracticeType.TSOG, "Tsog (Special Vajayogini Tsog)", "Tsog offering (Dakini Tsog). The twenty-fifth day of each Tibetan month is one of the two days per month when Tsog offerings should be performed. The Tsog offering on the 25th day of the 11th Tibetan month is considered to be one of the two most important Tsog days of the entire year. Lama Zopa Rinpoche explained that 'The Tibetan 11th month (Gyal Dawa) is a special time for mother tantra, a special time for Vajrayogini, and a special month to offer Vajrayogini tsog.' Phabongkha Rinpoche writes: '...the twenty-fifth day of the eleventh month is the holy time of the Mother, and the tenth day of the twelfth month is the holy time of the Father'." + doubleMonthSpecialTsokWarning));
                     } else {
                         result.add(new PracticeInfo(PracticeType.TSOG, "Tsog", "Tsog offering (Dakini Tsog). The twenty-fifth day of each Tibetan month is one of the two days per month when Tsog offerings should be performed."));
@@ -163,39 +506,53 @@ public class PracticeDatesService {
             }
         }
 
-        if (tibDate.tibMonth == 1 && tibDate.monthFlag != 2 && tibDate.tibDay <= 15) {
+        if (tibMonth == 1 && monthFlag != 2 && tibDay <= 15) {
             // during first 15 days of the Tibetan year all days are precept days
             // for day 15 it has already been added above
             result.add(new PracticeInfo(PracticeType.PRECEPTS, "Precepts", "Buddha days and eclipses are considered to be particularly powerful days for taking the Eight Mahayana Precepts."));
         }
 
+        // add the Tibetan date to the descriptions
+        var dayInfo = getDayInfo(tibMonth, tibDay, monthFlag, doubleDayFlag, isSkippedDay);
+        var remark = "";
+        if (isSkippedDay && tibDay == 1) {
+            remark = " Normally this event would be on the 1st day of the Tibetan month but the day number 1 of this Tibetan month is skipped so the event is done on the last day of the previous Tibetan month.";
+        } else if (isSkippedDay) {
+            remark = String.format(" Normally this event would be on the %dth day of the Tibetan month but in the current Tibetan month the day number %d is skipped so the event done on the previous Tibetan date.", tibDay, tibDay);
+        }
+
+        var resultWithDate = new ArrayList<PracticeInfo>();
         for (var resultItem : result) {
-            String dayInfo;
-            var dayNum = tibDate.tibDay;
-            var dayTxt = "";
-            if (isSkippedDay) {
-                dayNum -= 1;
-            }
-            if (tibDate.doubleDayFlag == 2) {
-                dayTxt = "Repeated day";
-            } else {
-                dayTxt = "Day";
-            }
+            var practice = new PracticeInfo(resultItem.getType(), resultItem.getName(), dayInfo + resultItem.getDescription() + remark);
+            resultWithDate.add(practices.computeIfAbsent(practice, x -> x));
+        }
 
-            if (tibDate.monthFlag != 2) {
-                dayInfo = String.format("%s %d of Tibetan month %d: ", dayTxt, dayNum, tibDate.tibMonth);
-            } else {
-                dayInfo = String.format("%s %d of repeated Tibetan month %d: ", dayTxt, dayNum, tibDate.tibMonth);
-            }
+        return List.copyOf(resultWithDate);
+    }
 
-            if (isSkippedDay) {
-                var remark = String.format(" Normally this event would be on the %dth day of the Tibetan month but in the current Tibetan month the day number %d is skipped so the event done on the previous Tibetan date.", tibDate.tibDay, tibDate.tibDay);
-                resultItem.setDescription(dayInfo + resultItem.getDescription() + remark);
-            } else {
-                resultItem.setDescription(dayInfo + resultItem.getDescription());
-            }
+    /**
+     * Get the text that introduces the description of a practice with the Tibetan date of the practice
+     */
+    private static String getDayInfo(int tibMonth, int tibDay, int monthFlag, int doubleDayFlag, boolean isSkippedDay) {
+        var dayNum = tibDay;
+        var dayTxt = "";
+        if (isSkippedDay && tibDay == 1) {
+            // the practices are done on the last day of the previous month
+            return String.format("Last day of the Tibetan month before %sTibetan month %d: ",
+                    monthFlag == 2 ? "repeated " : "", tibMonth);
+        } else if (isSkippedDay) {
+            dayNum -= 1;
+        }
+        if (doubleDayFlag == 2) {
+            dayTxt = "Repeated day";
+        } else {
+            dayTxt = "Day";
         }
 
-        return result;
+        if (monthFlag != 2) {
+            return String.format("%s %d of Tibetan month %d: ", dayTxt, dayNum, tibMonth);
+        } else {
+            return String.format("%s %d of repeated Tibetan month %d: ", dayTxt, dayNum, tibMonth);
+        }
     }
 }
@@ -0,0 +1,167 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service;
+
+import de.christian_steinert.practice_dates.practicedates.dates_service.PracticeInfo.PracticeType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Precalculated Tibetan dates and practices of a contiguous range of Gregorian days.
+ *
+ * The information is stored column by column in primitive arrays that are indexed by the number of days since the
+ * first day of the store, so a range of days is answered by reading consecutive array elements without any date
+ * conversion. Each distinct list of practices is kept only once and each day refers to its list, so the practices of
+ * a day are read without evaluating the practice rules again. In addition, the days of each practice type are kept
+ * as a sorted list of epoch days, so that the days of a practice type within a range are found by binary search
+ * without looking at the other days. Instances are immutable.
+ */
+final class PracticeDayStore {
+    /** epoch day of the first day of the store */
+    private final long firstDay;
+
+    /** Tibetan date of each day, packed as described in PackedTibDate */
+    private final long[] packedDates;
+
+    /** position of the practices of each day in practiceLists */
+    private final short[] practiceIndexes;
+
+    /** the distinct lists of practices of the days; the lists must not be modified */
+    private final List<List<PracticeInfo>> practiceLists;
+
+    /** sorted epoch days on which each practice type occurs, indexed by the ordinal of the practice type */
+    private final int[][] typeDays;
+
+    /**
+     * Constructor
+     *
+     * @param firstDay epoch day of the first day of the store
+     * @param packedDates Tibetan date of each day
+     * @param practices practices of each day, including those of a skipped day that follows it; equal lists are only
+     *                  kept once
+     * @throws IllegalStateException if there are too many distinct lists of practices
+     */
+    PracticeDayStore(long firstDay, long[] packedDates, List<List<PracticeInfo>> practices) {
+        this.firstDay = firstDay;
+        this.packedDates = packedDates;
+
+        var practiceLists = new ArrayList<List<PracticeInfo>>();
+        var indexes = new HashMap<List<PracticeInfo>, Integer>();
+        this.practiceIndexes = new short[practices.size()];
+        for (int i = 0; i < practiceIndexes.length; i++) {
+            var index = indexes.computeIfAbsent(practices.get(i), list -> {
+                practiceLists.add(list);
+                return practiceLists.size() - 1;
+            });
+            if (index > Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct lists of practices for the day store");
+            }
+            practiceIndexes[i] = index.shortValue();
+        }
+        this.practiceLists = List.copyOf(practiceLists);
+        this.typeDays = createTypeDays();
+    }
+
+    /**
+     * Collect the days of each practice type
+     */
+    private int[][] createTypeDays() {
+        // practice types of each distinct list as bit mask (bit n set for the practice type with ordinal n)
+        var listTypes = new int[practiceLists.size()];
+        for (int i = 0; i < listTypes.length; i++) {
+            for (var practice : practiceLists.get(i)) {
+                listTypes[i] |= 1 << practice.getType().ordinal();
+            }
+        }
+
+        var types = PracticeType.values();
+        var counts = new int[types.length];
+        for (var index : practiceIndexes) {
+            for (var type : types) {
+                if ((listTypes[index] & (1 << type.ordinal())) != 0) {
+                    counts[type.ordinal()]++;
+                }
+            }
+        }
+
+        var typeDays = new int[types.length][];
+        for (var type : types) {
+            var days = new int[counts[type.ordinal()]];
+            var count = 0;
+            for (int i = 0; i < practiceIndexes.length; i++) {
+                if ((listTypes[practiceIndexes[i]] & (1 << type.ordinal())) != 0) {
+                    days[count++] = (int) (firstDay + i);
+                }
+            }
+            typeDays[type.ordinal()] = days;
+        }
+        return typeDays;
+    }
+
+    /** @return the epoch day of the first day of the store */
+    long getFirstDay() {
+        return firstDay;
+    }
+
+    /** @return the number of days in the store */
+    int size() {
+        return packedDates.length;
+    }
+
+    /** @return true if the day is part of the store */
+    boolean contains(long epochDay) {
+        return epochDay >= firstDay && epochDay - firstDay < packedDates.length;
+    }
+
+    /** @return the packed Tibetan date of a day of the store */
+    long getPackedDate(long epochDay) {
+        return packedDates[(int) (epochDay - firstDay)];
+    }
+
+    /** @return the practices of a day of the store; the list must not be modified */
+    List<PracticeInfo> getPractices(long epochDay) {
+        return practiceLists.get(practiceIndexes[(int) (epochDay - firstDay)]);
+    }
+
+    /**
+     * Get the days on which a practice type occurs
+     *
+     * @param type the practice type
+     * @param from epoch day of the first day of the range
+     * @param to epoch day of the last day of the range
+     * @return the sorted epoch days of the range on which the practice type occurs
+     */
+    int[] getDaysOfType(PracticeType type, long from, long to) {
+        var days = typeDays[type.ordinal()];
+        return Arrays.copyOfRange(days, indexOf(days, from), indexOf(days, to + 1));
+    }
+
+    /**
+     * @return the index of the first element of the sorted days that is not before the epoch day
+     */
+    private static int indexOf(int[] days, long epochDay) {
+        if (epochDay <= Integer.MIN_VALUE) {
+            return 0;
+        } else if (epochDay > Integer.MAX_VALUE) {
+            return days.length;
+        }
+        var index = Arrays.binarySearch(days, (int) epochDay);
+        return (index >= 0) ? index : -index - 1;
+    }
+
+    /**
+     * @return the approximate number of bytes of the arrays of the store; the distinct lists of practices are counted
+     *         with one reference per practice because the practices themselves are shared with the practice table
+     */
+    long getMemorySize() {
+        var size = (long) packedDates.length * Long.BYTES + (long) practiceIndexes.length * Short.BYTES;
+        for (var days : typeDays) {
+            size += (long) days.length * Integer.BYTES;
+        }
+        for (var practices : practiceLists) {
+            size += (long) practices.size() * Integer.BYTES;
+        }
+        return size;
+    }
+}
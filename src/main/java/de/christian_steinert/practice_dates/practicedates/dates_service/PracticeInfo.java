@@ -1,10 +1,12 @@
 package de.christian_steinert.practice_dates.practicedates.dates_service;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Value;
 
-@Data
-@AllArgsConstructor
+/**
+ * A practice on a particular day. Instances are immutable; equal practices are shared by all days on which they
+ * occur.
+ */
+@Value
 public class PracticeInfo {
     public enum PracticeType{
         BUDDHA_DAY,
@@ -17,7 +19,7 @@ public class PracticeInfo {
         OTHER
     }
 
-    private PracticeType type;
-    private String name;
-    private String description;
+    PracticeType type;
+    String name;
+    String description;
 }
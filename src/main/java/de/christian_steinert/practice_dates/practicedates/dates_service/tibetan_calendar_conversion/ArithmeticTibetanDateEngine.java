@@ -0,0 +1,244 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+/**
+ * Converts between Gregorian and Tibetan dates by calculating each date on
+ * its own, without any tables of Tibetan months.
+ *
+ * A Tibetan month is identified by its global month number (zladag), which
+ * follows from the number of solar months since the epoch of the calendar
+ * with the same formula that is used for the month tables. The Gregorian
+ * date on which a lunar day ends is calculated directly from the true
+ * weekday of the lunar day, so each conversion only needs a few
+ * calculations of single lunar days. It takes constant time and memory for
+ * any date and needs no preparation, which suits small programs that only
+ * convert a few dates.
+ *
+ * The results are the same as those of {@link TibetanDateCalculation} for
+ * the same calendar system for all months that its tables can represent.
+ */
+public final class ArithmeticTibetanDateEngine implements TibetanDateEngine {
+	/**
+	 * largest supported global month number (about 80 million years); larger
+	 * numbers would overflow the calculation of the solar months
+	 */
+	private static final int MAX_ZLADAG = 1_000_000_000;
+
+	/** mean length of a lunar month in days, used to estimate the month */
+	private static final double DAYS_PER_MONTH = 29.530587;
+
+	/**
+	 * the calculation of single lunar days; its month tables are never
+	 * created
+	 */
+	private final TibetanDateCalculation calculation;
+
+	/** offset of the intercalation index of the calendar system */
+	private final int intercalationOffset;
+
+	/** epoch day of the first day of the month with global month number 0 */
+	private final long firstDayOfZladag0;
+
+	/** Constructor for an engine of the Phugpa system */
+	public ArithmeticTibetanDateEngine() {
+		this(new PhugpaCalendarSystem());
+	}
+
+	/**
+	 * Constructor for an engine of any system
+	 *
+	 * @param system
+	 *            the system whose dates are calculated
+	 */
+	public ArithmeticTibetanDateEngine(TibetanCalendarSystem system) {
+		this.calculation = new TibetanDateCalculation(system);
+		this.intercalationOffset = system.getParameters()
+				.getIntercalationOffset();
+		this.firstDayOfZladag0 = getMonthStartDay(0);
+	}
+
+	@Override
+	public long getPackedTibetanDate(long epochDay) {
+		double estimate = Math.floor((epochDay - this.firstDayOfZladag0)
+				/ DAYS_PER_MONTH);
+		if (Math.abs(estimate) > MAX_ZLADAG) {
+			return PackedTibDate.NONE;
+		}
+
+		// correct the estimation with the exact start of the months
+		int zladag = (int) estimate;
+		long monthStart = getMonthStartDay(zladag);
+		while (epochDay < monthStart) {
+			zladag--;
+			monthStart = getMonthStartDay(zladag);
+		}
+		while (epochDay >= getMonthStartDay(zladag + 1)) {
+			zladag++;
+			monthStart = getMonthStartDay(zladag);
+		}
+
+		// find the first lunar day that ends on or after the day; lunar days
+		// are a little shorter than solar days, so the number of the day
+		// within the month is a good estimation
+		int d = (int) Math.min(30, epochDay - monthStart + 1);
+		while ((d > 1) && (getLunarDayEnd(zladag, d - 1) >= epochDay)) {
+			d--;
+		}
+		long end = getLunarDayEnd(zladag, d);
+		while (end < epochDay) {
+			d++;
+			end = getLunarDayEnd(zladag, d);
+		}
+		long prevEnd = (d > 1) ? getLunarDayEnd(zladag, d - 1)
+				: monthStart - 1;
+
+		int doubleDayFlag = 0;
+		if (end > epochDay) {
+			// the lunar day ends on the next day: the first of a doubled day
+			doubleDayFlag = 1;
+		} else if (end - prevEnd == 2) {
+			doubleDayFlag = 2;
+		}
+
+		return packMonth(zladag, d, doubleDayFlag);
+	}
+
+	@Override
+	public long getEpochDay(int rabjung, int tibYear, int tibMonth,
+			int monthFlag, int tibDay) {
+		if ((tibYear < 1) || (tibYear > 60) || (tibMonth < 1)
+				|| (tibMonth > 12) || (monthFlag < 0) || (monthFlag > 2)
+				|| (tibDay < 1) || (tibDay > 30)) {
+			return NO_DAY;
+		}
+
+		long zladag = getZladag(rabjung, tibYear, tibMonth, monthFlag);
+		if ((zladag == NO_DAY) || (Math.abs(zladag) > MAX_ZLADAG)) {
+			return NO_DAY;
+		}
+
+		long end = getLunarDayEnd((int) zladag, tibDay);
+		long prevEnd = (tibDay > 1) ? getLunarDayEnd((int) zladag, tibDay - 1)
+				: getLunarDayEnd((int) zladag - 1, 30);
+		if (end == prevEnd) {
+			// the lunar day ends on the same day as the previous one
+			return NO_DAY;
+		} else if (end - prevEnd == 2) {
+			// the first of the two days of a doubled day
+			return end - 1;
+		}
+		return end;
+	}
+
+	/**
+	 * get the global month number of a Tibetan month
+	 *
+	 * Each solar month a since the epoch of the calendar gives the month
+	 * a + floorDiv(2a + offset, 65), labelled as in
+	 * TibetanDateCalculation.calculateNormalSystem. The remainder of that
+	 * division decides whether this is the month with the number of the
+	 * solar month, the month before it or a doubled month, and whether an
+	 * additional month precedes it.
+	 *
+	 * @return the global month number or NO_DAY if the month does not exist
+	 */
+	private long getZladag(int rabjung, int tibYear, int tibMonth,
+			int monthFlag) {
+		long totalYears = ((rabjung - 1L) * 60) + tibYear;
+		long a = (12 * (totalYears - 901)) + tibMonth - 3;
+
+		// the month itself belongs to solar month a ...
+		int rest = getSolarMonthRest(a);
+		if ((monthFlag == 0) && (rest < 48)) {
+			return getSolarMonthZladag(a);
+		} else if ((monthFlag == 1) && ((rest == 48) || (rest == 49))) {
+			return getSolarMonthZladag(a);
+		}
+
+		// ... or to the following solar month
+		int nextRest = getSolarMonthRest(a + 1);
+		if ((monthFlag == 0) && (nextRest > 51)) {
+			return getSolarMonthZladag(a + 1);
+		} else if ((monthFlag == 0) && (nextRest < 2)) {
+			return getSolarMonthZladag(a + 1) - 1;
+		} else if ((monthFlag == 2)
+				&& ((nextRest == 50) || (nextRest == 51))) {
+			return getSolarMonthZladag(a + 1);
+		}
+		return NO_DAY;
+	}
+
+	/**
+	 * pack the Tibetan date of a day of a month
+	 *
+	 * @param zladag
+	 *            the global month number of the month
+	 * @param tibDay
+	 *            the day within the month
+	 * @param doubleDayFlag
+	 *            the double day flag of the day
+	 * @return the packed date
+	 */
+	private long packMonth(int zladag, int tibDay, int doubleDayFlag) {
+		// find the solar month of the month (see getZladag)
+		long a = Math.floorDiv((65L * zladag) - this.intercalationOffset, 67) - 2;
+		while (getSolarMonthZladag(a + 1) <= zladag) {
+			a++;
+		}
+		int rest = getSolarMonthRest(a);
+
+		// otherwise this is the additional month before the month of a + 1,
+		// which has the number of the month of a + 1 minus one
+		int monthFlag = 0;
+		int monthShift = 0;
+		if (getSolarMonthZladag(a) == zladag) {
+			if ((rest == 48) || (rest == 49)) {
+				monthFlag = 1;
+			} else if ((rest == 50) || (rest == 51)) {
+				monthFlag = 2;
+				monthShift = -1;
+			} else if (rest > 51) {
+				monthShift = -1;
+			}
+		}
+
+		// a + 2 counts the months since month 1 of year 901
+		long months = a + 2 + monthShift;
+		int tibMonth = (int) Math.floorMod(months, 12L) + 1;
+		long totalYears = Math.floorDiv(months, 12L) + 901;
+		int rabjung = (int) Math.floorDiv(totalYears - 1, 60L) + 1;
+		int tibYear = (int) Math.floorMod(totalYears - 1, 60L) + 1;
+
+		return PackedTibDate.pack(rabjung, tibYear, tibMonth, monthFlag,
+				tibDay, doubleDayFlag, false);
+	}
+
+	/**
+	 * @return the global month number of the month that belongs to a solar
+	 *         month
+	 */
+	private long getSolarMonthZladag(long a) {
+		return a + Math.floorDiv((2 * a) + this.intercalationOffset, 65L);
+	}
+
+	/**
+	 * @return the remainder that decides how the month of a solar month is
+	 *         labelled
+	 */
+	private int getSolarMonthRest(long a) {
+		return (int) Math.floorMod((2 * a) + this.intercalationOffset, 65L);
+	}
+
+	/**
+	 * @return the epoch day of the first day of a month
+	 */
+	private long getMonthStartDay(int zladag) {
+		return getLunarDayEnd(zladag - 1, 30) + 1;
+	}
+
+	/**
+	 * @return the epoch day on which a lunar day ends
+	 */
+	private long getLunarDayEnd(int zladag, int d) {
+		return this.calculation.getLunarDayEndDay(zladag, d);
+	}
+}
@@ -0,0 +1,113 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+/**
+ * Helper routines for a Tibetan date that is packed into a single long value.
+ *
+ * Packed dates can be passed around and stored in primitive arrays without
+ * creating any objects. The bits of a packed date are used as follows:
+ *
+ * <pre>
+ * bits  0..4   number of the day within the Tibetan month (1..30)
+ * bits  5..6   double day flag (0..2)
+ * bit   7      skipped day flag
+ * bits  8..9   month flag (0..2)
+ * bits 10..13  number of the Tibetan month (1..12)
+ * bits 14..19  number of the year within the rabjung (1..60)
+ * bits 32..63  number of the rabjung (signed)
+ * </pre>
+ *
+ * The value {@link #NONE} represents "no date".
+ */
+public final class PackedTibDate {
+	/** packed value that does not represent any Tibetan date */
+	public static final long NONE = Long.MIN_VALUE;
+
+	private static final int DAY_SHIFT = 0;
+	private static final int DOUBLE_DAY_SHIFT = 5;
+	private static final int SKIPPED_SHIFT = 7;
+	private static final int MONTH_FLAG_SHIFT = 8;
+	private static final int MONTH_SHIFT = 10;
+	private static final int YEAR_SHIFT = 14;
+	private static final int RABJUNG_SHIFT = 32;
+
+	private PackedTibDate() {
+	}
+
+	/**
+	 * pack the components of a Tibetan date into a long value
+	 *
+	 * @param rabjung
+	 *            number of the Tibetan 60-year-cycle
+	 * @param tibYear
+	 *            number of the year within the rabjung (1..60)
+	 * @param tibMonth
+	 *            number of the Tibetan month (1..12)
+	 * @param monthFlag
+	 *            0: normal month, 1: first month of a double month, 2: second
+	 *            month of a double month
+	 * @param tibDay
+	 *            number of the day within the Tibetan month (1..30)
+	 * @param doubleDayFlag
+	 *            0: normal day; 1: first day of a double day; 2: second day of
+	 *            a double day
+	 * @param isSkippedDay
+	 *            true if the day is skipped
+	 * @return the packed date
+	 */
+	public static long pack(int rabjung, int tibYear, int tibMonth,
+			int monthFlag, int tibDay, int doubleDayFlag, boolean isSkippedDay) {
+		return ((long) rabjung << RABJUNG_SHIFT)
+				| ((long) tibYear << YEAR_SHIFT)
+				| ((long) tibMonth << MONTH_SHIFT)
+				| ((long) monthFlag << MONTH_FLAG_SHIFT)
+				| ((isSkippedDay ? 1L : 0L) << SKIPPED_SHIFT)
+				| ((long) doubleDayFlag << DOUBLE_DAY_SHIFT)
+				| ((long) tibDay << DAY_SHIFT);
+	}
+
+	/** @return the number of the rabjung of a packed date */
+	public static int rabjung(long packed) {
+		return (int) (packed >> RABJUNG_SHIFT);
+	}
+
+	/** @return the year within the rabjung of a packed date */
+	public static int tibYear(long packed) {
+		return (int) (packed >>> YEAR_SHIFT) & 0x3f;
+	}
+
+	/** @return the Tibetan month of a packed date */
+	public static int tibMonth(long packed) {
+		return (int) (packed >>> MONTH_SHIFT) & 0xf;
+	}
+
+	/** @return the month flag of a packed date */
+	public static int monthFlag(long packed) {
+		return (int) (packed >>> MONTH_FLAG_SHIFT) & 0x3;
+	}
+
+	/** @return the day within the Tibetan month of a packed date */
+	public static int tibDay(long packed) {
+		return (int) (packed >>> DAY_SHIFT) & 0x1f;
+	}
+
+	/** @return the double day flag of a packed date */
+	public static int doubleDayFlag(long packed) {
+		return (int) (packed >>> DOUBLE_DAY_SHIFT) & 0x3;
+	}
+
+	/** @return true if the packed date is a skipped day */
+	public static boolean isSkippedDay(long packed) {
+		return ((packed >>> SKIPPED_SHIFT) & 0x1) != 0;
+	}
+
+	/**
+	 * convert a packed date into a TibDate object
+	 *
+	 * @param packed
+	 *            the packed date
+	 * @return a TibDate object or null if packed is {@link #NONE}
+	 */
+	public static TibDate toTibDate(long packed) {
+		return TibDate.of(packed);
+	}
+}
@@ -0,0 +1,103 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The Phugpa system, which is followed by most Tibetan communities and by
+ * the Tibetan government in exile (the "normal system").
+ *
+ * Its skipped and doubled days can be taken from a month table file (see
+ * {@link TibetanMonthTableFile}) or from the class that is generated during
+ * the build (see {@link TibetanMonthTableGenerator}).
+ */
+public final class PhugpaCalendarSystem implements TibetanCalendarSystem {
+	private static final Logger LOG = Logger
+			.getLogger(PhugpaCalendarSystem.class.getName());
+
+	/**
+	 * name of the system property with the path of a month table file (see
+	 * TibetanMonthTableFile) that should be used instead of calculating the
+	 * month table
+	 */
+	public static final String MONTH_TABLE_FILE_PROPERTY = "tibetan.monthTableFile";
+
+	/**
+	 * the parameters of the Phugpa system; the 1st day of the 1st month of
+	 * year 2 of rabjung 17 is 1988-02-18
+	 */
+	private static final TibetanCalendarParameters PARAMETERS = new TibetanCalendarParameters.Builder()
+			.rabjungs(TibetanDateCalculation.RABJUNG_START,
+					TibetanDateCalculation.RABJUNG_END)
+			.gzadhruRoot(6, 57, 53, 2, 20)
+			.nyidhruRoot(25, 9, 10, 4, 32)
+			.rilchaRoot(13, 103)
+			.intercalationOffset(55)
+			.moonAnomaly(0, 5, 10, 15, 19, 22, 24, 25, 24, 22, 19, 15, 10, 5)
+			.sunAnomaly(0, 6, 10, 11, 10, 6)
+			.referenceMonth(17, 2, 1, 0, LocalDate.of(1988, 2, 18))
+			.build();
+
+	@Override
+	public String getName() {
+		return PHUGPA;
+	}
+
+	@Override
+	public TibetanCalendarParameters getParameters() {
+		return PARAMETERS;
+	}
+
+	/**
+	 * read the skipped and doubled days from the file given by the system
+	 * property MONTH_TABLE_FILE_PROPERTY or take them from the data that was
+	 * generated during the build
+	 */
+	@Override
+	public TibetanMonthTableData loadPrecalculatedData() {
+		String fileName = System.getProperty(MONTH_TABLE_FILE_PROPERTY);
+		if (fileName != null) {
+			Path file = Paths.get(fileName);
+			if (Files.exists(file)) {
+				try {
+					return TibetanMonthTableFile.read(file);
+				} catch (IOException e) {
+					LOG.log(Level.WARNING, "Month table file " + file
+							+ " is ignored, the months are calculated at runtime",
+							e);
+				}
+			}
+		}
+		return loadGeneratedData();
+	}
+
+	/**
+	 * load the skipped and doubled days from the class that was generated by
+	 * TibetanMonthTableGenerator during the build
+	 * 
+	 * @return the generated data or null if it is not available or invalid
+	 */
+	private static TibetanMonthTableData loadGeneratedData() {
+		try {
+			return (TibetanMonthTableData) Class
+					.forName(TibetanMonthTableGenerator.GENERATED_CLASS_NAME)
+					.getDeclaredConstructor().newInstance();
+		} catch (ClassNotFoundException e) {
+			// no generated data, e.g. when the build step did not run
+			return null;
+		} catch (ReflectiveOperationException | LinkageError
+				| ClassCastException e) {
+			// the class is there, but cannot be used, e.g. because its data
+			// does not match its checksum
+			LOG.log(Level.WARNING,
+					"Generated month table is invalid, the months are calculated at runtime",
+					e);
+			return null;
+		}
+	}
+}
@@ -1,12 +1,33 @@
 package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
 
 /**
- * A simple data class that represents a Tibetan date
+ * A simple immutable data class that represents a Tibetan date
+ *
+ * Instances can be shared between threads and caches. They should be
+ * obtained with the of() methods, which return shared instances for dates
+ * that have been used recently. A date can be converted into a single long
+ * value as described in {@link PackedTibDate} and back, e.g. to store many
+ * dates in a primitive array.
  */
-public class TibDate {
+public final class TibDate {
 	/**
-	 * Constructor
-	 * 
+	 * number of cached instances; a power of two so that the position in the
+	 * cache can be taken from the lower bits of the packed date. This is
+	 * enough for the days of about 10 years.
+	 */
+	private static final int CACHE_SIZE = 4096;
+
+	/**
+	 * recently used instances, each at a position that is given by its
+	 * packed value. An instance can be replaced by another one with the same
+	 * position at any time. No synchronization is needed because all fields
+	 * are final, so other threads see either null or a complete instance.
+	 */
+	private static final TibDate[] cache = new TibDate[CACHE_SIZE];
+
+	/**
+	 * Constructor for a normal day that is neither skipped nor doubled
+	 *
 	 * @param rabjung
 	 *            number of the Tibetan 60-year-cycle
 	 * @param tibYear
@@ -21,15 +42,112 @@ public class TibDate {
 	 */
 	public TibDate(int rabjung, int tibYear, int tibMonth, int monthFlag,
 			int tibDay) {
+		this(rabjung, tibYear, tibMonth, monthFlag, tibDay, 0, false);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param rabjung
+	 *            number of the Tibetan 60-year-cycle
+	 * @param tibYear
+	 *            number of the year within the rabjung (1..60)
+	 * @param tibMonth
+	 *            number of the Tibetan month (1..12)
+	 * @param monthFlag
+	 *            0: normal month, 1: first month of a double month, 2: second
+	 *            month of a double month
+	 * @param tibDay
+	 *            number of the day within the Tibetan month (1..30)
+	 * @param doubleDayFlag
+	 *            0: normal day; 1: first day of a double day; 2: second day of
+	 *            a double day
+	 * @param isSkippedDay
+	 *            true if the day is skipped
+	 */
+	public TibDate(int rabjung, int tibYear, int tibMonth, int monthFlag,
+			int tibDay, int doubleDayFlag, boolean isSkippedDay) {
 		super();
 		this.rabjung = rabjung;
 		this.tibYear = tibYear;
 		this.tibMonth = tibMonth;
 		this.monthFlag = monthFlag;
 		this.tibDay = tibDay;
+		this.doubleDayFlag = doubleDayFlag;
+		this.isSkippedDay = isSkippedDay;
+	}
+
+	/**
+	 * get a Tibetan date, preferably an instance that is already in use
+	 *
+	 * @param rabjung
+	 *            number of the Tibetan 60-year-cycle
+	 * @param tibYear
+	 *            number of the year within the rabjung (1..60)
+	 * @param tibMonth
+	 *            number of the Tibetan month (1..12)
+	 * @param monthFlag
+	 *            0: normal month, 1: first month of a double month, 2: second
+	 *            month of a double month
+	 * @param tibDay
+	 *            number of the day within the Tibetan month (1..30)
+	 * @param doubleDayFlag
+	 *            0: normal day; 1: first day of a double day; 2: second day of
+	 *            a double day
+	 * @param isSkippedDay
+	 *            true if the day is skipped
+	 * @return the Tibetan date
+	 */
+	public static TibDate of(int rabjung, int tibYear, int tibMonth,
+			int monthFlag, int tibDay, int doubleDayFlag, boolean isSkippedDay) {
+		if (((tibYear >>> 6) != 0) || ((tibMonth >>> 4) != 0)
+				|| ((monthFlag >>> 2) != 0) || ((tibDay >>> 5) != 0)
+				|| ((doubleDayFlag >>> 2) != 0)) {
+			// numbers that do not fit into a packed date are not cached
+			return new TibDate(rabjung, tibYear, tibMonth, monthFlag, tibDay,
+					doubleDayFlag, isSkippedDay);
+		}
+		return of(PackedTibDate.pack(rabjung, tibYear, tibMonth, monthFlag,
+				tibDay, doubleDayFlag, isSkippedDay));
+	}
+
+	/**
+	 * get the Tibetan date for a packed date, preferably an instance that is
+	 * already in use
+	 *
+	 * @param packed
+	 *            the date packed as described in {@link PackedTibDate}
+	 * @return the Tibetan date or null if packed is {@link PackedTibDate#NONE}
+	 */
+	public static TibDate of(long packed) {
+		if (packed == PackedTibDate.NONE) {
+			return null;
+		}
+
+		int i = (int) (packed ^ (packed >>> 17) ^ (packed >>> 32))
+				& (CACHE_SIZE - 1);
+		TibDate result = cache[i];
+		if ((result == null) || (result.pack() != packed)) {
+			result = new TibDate(PackedTibDate.rabjung(packed),
+					PackedTibDate.tibYear(packed),
+					PackedTibDate.tibMonth(packed),
+					PackedTibDate.monthFlag(packed),
+					PackedTibDate.tibDay(packed),
+					PackedTibDate.doubleDayFlag(packed),
+					PackedTibDate.isSkippedDay(packed));
+			cache[i] = result;
+		}
+		return result;
+	}
 
-		this.isSkippedDay = false;
-		this.doubleDayFlag = 0;
+	/**
+	 * @return this date packed into a long value as described in
+	 *         {@link PackedTibDate}
+	 */
+	public long pack() {
+		return PackedTibDate.pack(this.rabjung, this.tibYear, this.tibMonth,
+				this.monthFlag, this.tibDay, this.doubleDayFlag,
+				this.isSkippedDay);
 	}
 
 	@Override
@@ -77,34 +195,34 @@ public class TibDate {
 	}
 
 	/** number of the rabjung (60-year-cycle) */
-	public int rabjung;
+	public final int rabjung;
 
 	/** number of the Tibetan year within the rabjung */
-	public int tibYear;
+	public final int tibYear;
 
 	/** number of the Tibetan month */
-	public int tibMonth;
+	public final int tibMonth;
 
 	/**
 	 * type of month - 0: this month is a normal month; 1: this month is the
 	 * first month of a double month; 2: this month is the second month of a
 	 * double month
 	 */
-	public int monthFlag;
+	public final int monthFlag;
 
 	/** number of the Tibetan day in the Tibetan month */
-	public int tibDay;
+	public final int tibDay;
 
 	/**
 	 * if "true" then this day was skipped and therefore it has no corresponding
 	 * western Date
 	 */
-	public boolean isSkippedDay;
+	public final boolean isSkippedDay;
 
 	/**
 	 * type of day - 0: normal day; 1: first day of a double day; 2: second day
 	 * of a double day
 	 */
-	public int doubleDayFlag;
+	public final int doubleDayFlag;
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,335 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import java.time.LocalDate;
+
+/**
+ * The parameters in which the systems of the Tibetan calendar differ: the
+ * root figures of their epoch, their intercalation, the tables for the
+ * anomalies of the moon and the sun and the Gregorian date of a month that
+ * ties their day count to the Gregorian calendar.
+ *
+ * The mean motions of the moon and the sun are the same for all systems
+ * that follow the Kalacakra tradition (grub-rtsis); they are part of the
+ * calculation in {@link TibetanDateCalculation}.
+ *
+ * Instances are immutable; they are created with a {@link Builder}.
+ */
+public final class TibetanCalendarParameters {
+	/** units of the figures of the gza'-dhru (weekday, ... , part) */
+	private static final int[] GZADHRU_UNITS = { 7, 60, 60, 6, 707 };
+
+	/** units of the figures of the nyi-dhru (lunar mansion, ... , part) */
+	private static final int[] NYIDHRU_UNITS = { 27, 60, 60, 6, 67 };
+
+	/** units of the figures of the ril-cha */
+	private static final int[] RILCHA_UNITS = { 28, 126 };
+
+	/** number of steps of the table for the anomaly of the moon */
+	private static final int MOON_ANOMALY_STEPS = 14;
+
+	/** number of steps of the table for the anomaly of the sun */
+	private static final int SUN_ANOMALY_STEPS = 6;
+
+	private final int firstRabjung;
+	private final int lastRabjung;
+	private final int[] gzadhruRoot;
+	private final int[] nyidhruRoot;
+	private final int[] rilchaRoot;
+	private final int intercalationOffset;
+	private final int[] moonAnomaly;
+	private final int[] sunAnomaly;
+	private final int referenceRabjung;
+	private final int referenceYear;
+	private final int referenceMonth;
+	private final int referenceMonthFlag;
+	private final LocalDate referenceDate;
+
+	private TibetanCalendarParameters(Builder builder) {
+		this.firstRabjung = builder.firstRabjung;
+		this.lastRabjung = builder.lastRabjung;
+		this.gzadhruRoot = builder.gzadhruRoot.clone();
+		this.nyidhruRoot = builder.nyidhruRoot.clone();
+		this.rilchaRoot = builder.rilchaRoot.clone();
+		this.intercalationOffset = builder.intercalationOffset;
+		this.moonAnomaly = builder.moonAnomaly.clone();
+		this.sunAnomaly = builder.sunAnomaly.clone();
+		this.referenceRabjung = builder.referenceRabjung;
+		this.referenceYear = builder.referenceYear;
+		this.referenceMonth = builder.referenceMonth;
+		this.referenceMonthFlag = builder.referenceMonthFlag;
+		this.referenceDate = builder.referenceDate;
+	}
+
+	/** @return the first rabjung of the frequently used range */
+	int getFirstRabjung() {
+		return this.firstRabjung;
+	}
+
+	/** @return the last rabjung of the frequently used range */
+	int getLastRabjung() {
+		return this.lastRabjung;
+	}
+
+	/** @return the gza'-dhru (root lunar weekday) of month number 0 */
+	int[] getGzadhruRoot() {
+		return this.gzadhruRoot.clone();
+	}
+
+	/** @return the nyi-dhru (root sun position) of month number 0 */
+	int[] getNyidhruRoot() {
+		return this.nyidhruRoot.clone();
+	}
+
+	/** @return the ril-cha (root position in the lunation cycle) of month number 0 */
+	int[] getRilchaRoot() {
+		return this.rilchaRoot.clone();
+	}
+
+	/**
+	 * @return the offset of the intercalation index: solar month a gives the
+	 *         month a + (2a + offset) / 65
+	 */
+	int getIntercalationOffset() {
+		return this.intercalationOffset;
+	}
+
+	/** @return the steps of the table for the anomaly of the moon */
+	int[] getMoonAnomaly() {
+		return this.moonAnomaly.clone();
+	}
+
+	/** @return the steps of the table for the anomaly of the sun */
+	int[] getSunAnomaly() {
+		return this.sunAnomaly.clone();
+	}
+
+	/** @return the rabjung of the reference month */
+	int getReferenceRabjung() {
+		return this.referenceRabjung;
+	}
+
+	/** @return the year within the rabjung of the reference month */
+	int getReferenceYear() {
+		return this.referenceYear;
+	}
+
+	/** @return the number (1..12) of the reference month */
+	int getReferenceMonth() {
+		return this.referenceMonth;
+	}
+
+	/** @return the month flag of the reference month */
+	int getReferenceMonthFlag() {
+		return this.referenceMonthFlag;
+	}
+
+	/** @return the Gregorian date of the first day of the reference month */
+	LocalDate getReferenceDate() {
+		return this.referenceDate;
+	}
+
+	/**
+	 * check that the figures of a root have the expected number of figures
+	 * and that each figure is within its unit
+	 */
+	private static int[] checkFigures(String name, int[] figures, int[] units) {
+		if (figures.length != units.length) {
+			throw new IllegalArgumentException(name + " needs "
+					+ units.length + " figures");
+		}
+		for (int i = 0; i < figures.length; i++) {
+			if ((figures[i] < 0) || (figures[i] >= units[i])) {
+				throw new IllegalArgumentException("Figure " + i + " of "
+						+ name + " must be between 0 and " + (units[i] - 1));
+			}
+		}
+		return figures.clone();
+	}
+
+	/**
+	 * check that an anomaly table has the expected number of steps
+	 */
+	private static int[] checkSteps(String name, int[] steps, int count) {
+		if (steps.length != count) {
+			throw new IllegalArgumentException(name + " needs " + count
+					+ " steps");
+		}
+		return steps.clone();
+	}
+
+	/**
+	 * Collects the parameters of a calendar system
+	 */
+	public static final class Builder {
+		private int firstRabjung;
+		private int lastRabjung = -1;
+		private int[] gzadhruRoot;
+		private int[] nyidhruRoot;
+		private int[] rilchaRoot;
+		private int intercalationOffset = -1;
+		private int[] moonAnomaly;
+		private int[] sunAnomaly;
+		private int referenceRabjung;
+		private int referenceYear;
+		private int referenceMonth;
+		private int referenceMonthFlag;
+		private LocalDate referenceDate;
+
+		/** Constructor for a builder without any parameters */
+		public Builder() {
+		}
+
+		/**
+		 * Constructor for a builder that starts with the parameters of
+		 * another system, e.g. for a system that only differs in its epoch
+		 *
+		 * @param parameters
+		 *            the parameters to start with
+		 */
+		public Builder(TibetanCalendarParameters parameters) {
+			this.firstRabjung = parameters.firstRabjung;
+			this.lastRabjung = parameters.lastRabjung;
+			this.gzadhruRoot = parameters.gzadhruRoot;
+			this.nyidhruRoot = parameters.nyidhruRoot;
+			this.rilchaRoot = parameters.rilchaRoot;
+			this.intercalationOffset = parameters.intercalationOffset;
+			this.moonAnomaly = parameters.moonAnomaly;
+			this.sunAnomaly = parameters.sunAnomaly;
+			this.referenceRabjung = parameters.referenceRabjung;
+			this.referenceYear = parameters.referenceYear;
+			this.referenceMonth = parameters.referenceMonth;
+			this.referenceMonthFlag = parameters.referenceMonthFlag;
+			this.referenceDate = parameters.referenceDate;
+		}
+
+		/**
+		 * set the frequently used rabjungs, whose month tables are kept
+		 * once they have been calculated
+		 */
+		public Builder rabjungs(int firstRabjung, int lastRabjung) {
+			if (firstRabjung > lastRabjung) {
+				throw new IllegalArgumentException("The first rabjung must not be after the last rabjung");
+			}
+			this.firstRabjung = firstRabjung;
+			this.lastRabjung = lastRabjung;
+			return this;
+		}
+
+		/**
+		 * set the gza'-dhru (root lunar weekday) of month number 0
+		 *
+		 * @param root
+		 *            five figures in the units 7, 60, 60, 6, 707
+		 */
+		public Builder gzadhruRoot(int... root) {
+			this.gzadhruRoot = checkFigures("gza'-dhru", root, GZADHRU_UNITS);
+			return this;
+		}
+
+		/**
+		 * set the nyi-dhru (root sun position) of month number 0
+		 *
+		 * @param root
+		 *            five figures in the units 27, 60, 60, 6, 67
+		 */
+		public Builder nyidhruRoot(int... root) {
+			this.nyidhruRoot = checkFigures("nyi-dhru", root, NYIDHRU_UNITS);
+			return this;
+		}
+
+		/**
+		 * set the ril-cha (root position in the lunation cycle) of month
+		 * number 0
+		 *
+		 * @param root
+		 *            two figures in the units 28, 126
+		 */
+		public Builder rilchaRoot(int... root) {
+			this.rilchaRoot = checkFigures("ril-cha", root, RILCHA_UNITS);
+			return this;
+		}
+
+		/**
+		 * set the offset of the intercalation index
+		 *
+		 * @param offset
+		 *            the offset (0..64): solar month a gives the month
+		 *            a + (2a + offset) / 65
+		 */
+		public Builder intercalationOffset(int offset) {
+			if ((offset < 0) || (offset >= 65)) {
+				throw new IllegalArgumentException("The intercalation offset must be between 0 and 64");
+			}
+			this.intercalationOffset = offset;
+			return this;
+		}
+
+		/**
+		 * set the table for the anomaly of the moon
+		 *
+		 * @param steps
+		 *            the 14 steps of the table
+		 */
+		public Builder moonAnomaly(int... steps) {
+			this.moonAnomaly = checkSteps("The moon anomaly", steps,
+					MOON_ANOMALY_STEPS);
+			return this;
+		}
+
+		/**
+		 * set the table for the anomaly of the sun
+		 *
+		 * @param steps
+		 *            the 6 steps of the table
+		 */
+		public Builder sunAnomaly(int... steps) {
+			this.sunAnomaly = checkSteps("The sun anomaly", steps,
+					SUN_ANOMALY_STEPS);
+			return this;
+		}
+
+		/**
+		 * set a month whose first day is known; it ties the day count of the
+		 * calculation to the Gregorian calendar
+		 *
+		 * @param rabjung
+		 *            rabjung of the month
+		 * @param tibYear
+		 *            year of the month within the rabjung
+		 * @param tibMonth
+		 *            number of the month
+		 * @param monthFlag
+		 *            0: normal month; 1: first month of a double month; 2:
+		 *            second month of a double month
+		 * @param firstDay
+		 *            the Gregorian date of the first day of the month
+		 */
+		public Builder referenceMonth(int rabjung, int tibYear, int tibMonth,
+				int monthFlag, LocalDate firstDay) {
+			this.referenceRabjung = rabjung;
+			this.referenceYear = tibYear;
+			this.referenceMonth = tibMonth;
+			this.referenceMonthFlag = monthFlag;
+			this.referenceDate = firstDay;
+			return this;
+		}
+
+		/**
+		 * create the parameters
+		 *
+		 * @throws IllegalStateException
+		 *             if not all parameters have been set
+		 */
+		public TibetanCalendarParameters build() {
+			if ((this.gzadhruRoot == null) || (this.nyidhruRoot == null)
+					|| (this.rilchaRoot == null)
+					|| (this.intercalationOffset < 0)
+					|| (this.moonAnomaly == null) || (this.sunAnomaly == null)
+					|| (this.referenceDate == null)
+					|| (this.firstRabjung > this.lastRabjung)) {
+				throw new IllegalStateException("Not all parameters of the calendar system have been set");
+			}
+			return new TibetanCalendarParameters(this);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+
+/**
+ * A system of the Tibetan calendar, i.e. a tradition with its own epoch and
+ * constants for calculating the months and days.
+ *
+ * A system only describes how its dates are calculated; its month tables are
+ * created by the calculation that {@link #createCalculation()} returns when
+ * they are needed for the first time, so systems that are never used cost
+ * neither memory nor time. Each calculation keeps its own tables.
+ *
+ * The systems may differ in their epoch, their intercalation and their
+ * tables for the anomalies of the moon and the sun (see
+ * {@link TibetanCalendarParameters}), but they share the mean motions of the
+ * moon and the sun. To add a system, implement this interface with a public
+ * constructor without parameters and list the class in
+ * META-INF/services/ with the name of this interface; {@link #forName(String)}
+ * and {@link #getNames()} find the systems with a {@link ServiceLoader}.
+ */
+public interface TibetanCalendarSystem {
+	/** name of the Phugpa system, the most widely used system */
+	String PHUGPA = "phugpa";
+
+	/**
+	 * @return the name of the system as used in queries
+	 */
+	String getName();
+
+	/**
+	 * @return the parameters from which the dates of this system are
+	 *         calculated
+	 */
+	TibetanCalendarParameters getParameters();
+
+	/**
+	 * load skipped and doubled days that have been calculated in advance for
+	 * this system; the data must have been calculated with the parameters of
+	 * this system
+	 *
+	 * @return the precalculated data or null if there is none
+	 */
+	default TibetanMonthTableData loadPrecalculatedData() {
+		return null;
+	}
+
+	/**
+	 * create a calculation for the dates of this system; its month tables
+	 * are created when they are needed for the first time
+	 *
+	 * @return a new calculation with the month tables and day cursors of
+	 *         this system
+	 */
+	default TibetanDateCalculation createCalculation() {
+		return new TibetanDateCalculation(this);
+	}
+
+	/**
+	 * get a system by its name
+	 *
+	 * @param name
+	 *            one of the names returned by {@link #getNames()}
+	 * @return the system
+	 * @throws IllegalArgumentException
+	 *             if there is no system with that name
+	 */
+	static TibetanCalendarSystem forName(String name) {
+		for (TibetanCalendarSystem system : ServiceLoader
+				.load(TibetanCalendarSystem.class)) {
+			if (system.getName().equals(name)) {
+				return system;
+			}
+		}
+		throw new IllegalArgumentException("Unknown Tibetan calendar system: "
+				+ name);
+	}
+
+	/**
+	 * @return the names of all systems that are registered in
+	 *         META-INF/services/
+	 */
+	static List<String> getNames() {
+		return ServiceLoader.load(TibetanCalendarSystem.class).stream()
+				.map(provider -> provider.get().getName())
+				.collect(Collectors.toList());
+	}
+}
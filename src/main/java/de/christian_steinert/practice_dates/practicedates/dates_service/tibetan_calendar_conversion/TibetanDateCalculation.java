@@ -1,12 +1,18 @@
 package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A set of routines to convert back and forth between Gregorian and Tibetan
@@ -16,120 +22,296 @@ import java.util.List;
  * that is needed for doing date calculations.
  * 
  * There are no astrological calculations in this class.
+ * 
+ * The dates are calculated according to the parameters of a
+ * {@link TibetanCalendarSystem}, by default the Phugpa system. Each
+ * calculation keeps its own parameters and month tables, so calculations
+ * for different systems can be used side by side.
+ * 
+ * The months are kept in tables, which makes conversions of many dates fast;
+ * see {@link ArithmeticTibetanDateEngine} for an implementation without
+ * tables.
  */
-public class TibetanDateCalculation {
-	/** first suported rabjung */
+public class TibetanDateCalculation implements TibetanDateEngine {
+	private static final Logger LOG = Logger
+			.getLogger(TibetanDateCalculation.class.getName());
+
+	/**
+	 * first rabjung of the frequently used range of the Phugpa system (1027
+	 * CE); wildcard queries for the rabjung are limited to the range of the
+	 * calculation (see {@link #getFirstRabjung()}), while all other
+	 * conversions also work far beyond it
+	 */
 	public static final int RABJUNG_START = 1;
 
-	/** last supported Rabjung */
+	/**
+	 * last rabjung of the frequently used range of the Phugpa system (until
+	 * 2226 CE)
+	 */
 	public static final int RABJUNG_END = 20;
 
+	/** number of milliseconds per day */
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	/** number of months after which the nyi-dhru repeats */
+	private static final int NYIDHRU_PERIOD = 804;
+
+	/** number of months after which the ril-cha repeats */
+	private static final int RILCHA_PERIOD = 3528;
+
+	/**
+	 * length of the mean lunar day and of the mean month in the units of the
+	 * gza'-dhru (1 day = 60 * 60 * 6 * 707 units)
+	 */
+	private static final long UNITS_PER_DAY = 60L * 60 * 6 * 707;
+	private static final long UNITS_PER_LUNAR_DAY = ((59 * 60 + 3) * 6 + 4) * 707L + 16;
+	private static final long UNITS_PER_MONTH = 29 * UNITS_PER_DAY
+			+ ((31 * 60 + 50) * 6 + 0) * 707L + 480;
+
+	/** the calendar system whose dates are calculated */
+	private final TibetanCalendarSystem system;
+
+	/** the frequently used range of rabjungs */
+	private final int firstRabjung;
+	private final int lastRabjung;
+
+	/** offset of the intercalation index (see calculateNormalSystem) */
+	private final int intercalationOffset;
+
+	/**
+	 * table for the lunar anomaly in calca13a: step (a10s) and multiplier
+	 * (a10m) for each of the 14 positions (a10z)
+	 */
+	private final int[] a10Steps;
+	private final int[] a10Multipliers;
+
+	/**
+	 * table for the solar anomaly in calca13a: step (a11cs) and multiplier
+	 * (a11cm) for each of the 6 positions (a11cr)
+	 */
+	private final int[] a11cSteps;
+	private final int[] a11cMultipliers;
+
+	/** gza'-dhru of the month number 0 */
+	private final int[] gzadhruRoot;
+
+	/** gza'-dhru of the month number 0 in the units of the gza'-dhru */
+	private final long gzadhruOffset;
+
+	/** packed nyi-dhru of each month of a cycle (see calculateNyidhruTable) */
+	private final int[] nyidhruTable;
+
+	/** packed ril-cha of each month of a cycle (see calculateRilchaTable) */
+	private final short[] rilchaTable;
+
 	/**
-	 * the offset by which the global month number must be adjusted in order to
-	 * make the month 2 of year 1 in rabjung 16 the month number "0". This is
-	 * required because many other calculations are interpolations that are
-	 * based on this point in time and that are projecting forwards and
-	 * backwards from this point
+	 * difference between the day count of the gza'-dhru and the epoch day;
+	 * this is calibrated with the reference month of the system
 	 */
-	private static final int C_ZLADAG_OFFSET = 11134;
+	private final long epochDayOffset;
 
 	/**
 	 * precalculated information with the most important characteristics of each
-	 * Tibetan month
+	 * Tibetan month; the months of each rabjung are calculated when they are
+	 * needed for the first time.
+	 * 
+	 * The reference is only read and replaced atomically: each query uses
+	 * the tables that were current when it started, so the tables can be
+	 * replaced at any time without locking any reader.
 	 */
-	static List<TibetanMonthInfo> tibetanMonthRecords = new ArrayList<TibetanMonthInfo>();
-
-	/** internal record, representing the properties of a Tibetan month */
-	private class TibetanMonthInfo {
-		/** number of the 60-year cycle */
-		int rabjung;
-
-		/** number of the year within the 60-year cycle (1..60) */
-		int tibYear;
-
-		/** number of the month (1..12) */
-		int tibMonth;
-
-		/**
-		 * type of Tibetan month - 0: normal month; 1: first month of a double
-		 * month; 2: second month of a double month
-		 */
-		int monthFlag;
-
-		/** total global number of this month */
-		int zladag;
-
-		/**
-		 * number of the first skipped day during this month (or "0" if no day
-		 * is skipped)
-		 */
-		int skip1;
-
-		/**
-		 * number of the second skipped day during this month (or "0" if no 2nd
-		 * day is skipped)
-		 */
-		int skip2;
-
-		/**
-		 * number of the first doubled day during this month (or "0" if no day
-		 * is doubled)
-		 */
-		int double1;
-
-		/**
-		 * number of the second doubled day during this month (or "0" if no 2nd
-		 * day is doubled)
-		 */
-		int double2;
-
-		/** the corresponding date for the first day of this Tibetan month */
-		Date westernDate;
-
-		/** Constructor */
-		public TibetanMonthInfo(int rabjung, int tibYear, int tibMonth,
-				int zladag, int monthFlag, int skip1, int skip2, int double1,
-				int double2, Date westernDate) {
-			super();
-			this.rabjung = rabjung;
-			this.tibYear = tibYear;
-			this.tibMonth = tibMonth;
-			this.zladag = zladag;
-			this.monthFlag = monthFlag;
-			this.skip1 = skip1;
-			this.skip2 = skip2;
-			this.double1 = double1;
-			this.double2 = double2;
-			this.westernDate = westernDate;
-		}
+	private final AtomicReference<TibetanMonthSegments> monthSegments =
+			new AtomicReference<>();
+
+	/** Constructor for a calculation of the Phugpa system */
+	public TibetanDateCalculation() {
+		this(new PhugpaCalendarSystem());
+	}
+
+	/**
+	 * Constructor for a calculation of any system; the month tables are
+	 * created when they are needed for the first time
+	 * 
+	 * @param system
+	 *            the system whose dates are calculated
+	 */
+	public TibetanDateCalculation(TibetanCalendarSystem system) {
+		TibetanCalendarParameters parameters = system.getParameters();
+		this.system = system;
+		this.firstRabjung = parameters.getFirstRabjung();
+		this.lastRabjung = parameters.getLastRabjung();
+		this.intercalationOffset = parameters.getIntercalationOffset();
+		this.a10Steps = parameters.getMoonAnomaly();
+		this.a10Multipliers = calculateMultipliers(this.a10Steps);
+		this.a11cSteps = parameters.getSunAnomaly();
+		this.a11cMultipliers = calculateMultipliers(this.a11cSteps);
+		this.gzadhruRoot = parameters.getGzadhruRoot();
+		this.gzadhruOffset = this.gzadhruRoot[0] * UNITS_PER_DAY
+				+ ((this.gzadhruRoot[1] * 60 + this.gzadhruRoot[2]) * 6
+						+ this.gzadhruRoot[3]) * 707L + this.gzadhruRoot[4];
+		this.nyidhruTable = calculateNyidhruTable(parameters.getNyidhruRoot());
+		this.rilchaTable = calculateRilchaTable(parameters.getRilchaRoot());
+		// needs all other parameters
+		this.epochDayOffset = calculateEpochDayOffset(parameters);
+	}
 
-		@Override
-		public String toString() {
-			DateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy");
-			String date;
+	/**
+	 * @return the first rabjung of the frequently used range, which is the
+	 *         range of wildcard queries for the rabjung
+	 */
+	public int getFirstRabjung() {
+		return this.firstRabjung;
+	}
 
-			if (this.westernDate != null) {
-				date = dateFormat.format(this.westernDate);
-			} else {
-				date = "";
+	/** @return the last rabjung of the frequently used range */
+	public int getLastRabjung() {
+		return this.lastRabjung;
+	}
+
+	/**
+	 * calculate the multipliers of an anomaly table: the difference between
+	 * each step and the next one, where the last step is followed by the
+	 * first one
+	 */
+	private static int[] calculateMultipliers(int[] steps) {
+		int[] multipliers = new int[steps.length];
+		for (int i = 0; i < steps.length; i++) {
+			multipliers[i] = Math.abs(steps[(i + 1) % steps.length] - steps[i]);
+		}
+		return multipliers;
+	}
+
+	/**
+	 * @return the current month tables; they are created if this is the first
+	 *         call
+	 */
+	TibetanMonthSegments getMonthSegments() {
+		TibetanMonthSegments segments = this.monthSegments.get();
+		if (segments == null) {
+			// several threads may create the tables at the same time; they
+			// all use the tables that were published first
+			segments = createMonthSegments();
+			if (!this.monthSegments.compareAndSet(null, segments)) {
+				segments = this.monthSegments.get();
 			}
-			return this.rabjung + "\t" + this.tibYear + "\t" + this.tibMonth
-					+ "\t" + this.monthFlag + "\t" + this.zladag + "\t"
-					+ this.skip1 + "\t" + this.skip2 + "\t" + this.double1
-					+ "\t" + this.double2 + "\t" + date + "\n";
 		}
+		return segments;
 	}
 
-	/** Default Constructor */
-	public TibetanDateCalculation() {
-		// do all pre-calculations and remember them in a static list for future use
-		synchronized (tibetanMonthRecords) {
-			if (tibetanMonthRecords.isEmpty()) {
-				calculateNormalSystem();
-				normalSystemAddSkippedAndDoubled();
-				addWesternDates();
+	/**
+	 * create new month tables with the precalculated data that is currently
+	 * available
+	 */
+	private TibetanMonthSegments createMonthSegments() {
+		return new TibetanMonthSegments(this, this.firstRabjung,
+				this.lastRabjung, this.system.loadPrecalculatedData());
+	}
+
+	/**
+	 * Replace the month tables of this calculation, e.g. after the file
+	 * given by the system property
+	 * {@link PhugpaCalendarSystem#MONTH_TABLE_FILE_PROPERTY} has been
+	 * changed. Other calculations keep their tables.
+	 * 
+	 * The new tables are created in the background, including the table of
+	 * the current rabjung, and are then swapped in atomically. Conversions
+	 * that run in the meantime continue to use the old tables without being
+	 * blocked.
+	 * 
+	 * @return a future that is completed when the new tables are in use
+	 */
+	public CompletableFuture<Void> reloadMonthTables() {
+		return CompletableFuture.supplyAsync(() -> {
+			TibetanMonthSegments segments = createMonthSegments();
+			segments.findSegment(LocalDate.now().toEpochDay());
+			return segments;
+		}).thenAccept(this.monthSegments::set);
+	}
+
+	/**
+	 * calculate the information about all supported Tibetan months
+	 * 
+	 * @param usePrecalculatedData
+	 *            true if the skipped and doubled days may be taken from the
+	 *            data that the system has calculated in advance instead of
+	 *            calculating them
+	 * @return the table with the information about all months of the
+	 *         frequently used rabjungs
+	 */
+	TibetanMonthTable calculateMonthTable(boolean usePrecalculatedData) {
+		return calculateMonthTable(this.firstRabjung, this.lastRabjung,
+				usePrecalculatedData ? this.system.loadPrecalculatedData()
+						: null);
+	}
+
+	/**
+	 * calculate the information about the Tibetan months of a range of
+	 * rabjungs
+	 * 
+	 * @param rabjungStart
+	 *            first rabjung
+	 * @param rabjungEnd
+	 *            last rabjung
+	 * @param precalculated
+	 *            skipped and doubled days that have been calculated in
+	 *            advance or null if they need to be calculated
+	 * @return the table with the information about the months
+	 */
+	TibetanMonthTable calculateMonthTable(int rabjungStart,
+			int rabjungEnd, TibetanMonthTableData precalculated) {
+		TibetanMonthTable.Builder months = new TibetanMonthTable.Builder(
+				getFirstZladag(rabjungStart));
+		calculateNormalSystem(months, rabjungStart, rabjungEnd);
+		int offset = getPrecalculatedOffset(months, precalculated);
+		if (offset < 0) {
+			normalSystemAddSkippedAndDoubled(months);
+			return addWesternDates(months);
+		}
+
+		// take the skipped and doubled days and the start of the months from
+		// the data that has been calculated in advance
+		for (int i = 0; i < months.size(); i++) {
+			months.setPackedSkippedAndDoubled(i,
+					precalculated.getPackedSkippedAndDoubled(offset + i));
+			months.setStartDay(i, precalculated.getStartDay(offset + i));
+		}
+		return months.build(precalculated.getStartDay(offset + months.size()));
+	}
+
+	/**
+	 * get the position of the first month of a table in data that has been
+	 * calculated in advance
+	 * 
+	 * @return the position or -1 if the data is not available for all months
+	 *         of the table
+	 */
+	private static int getPrecalculatedOffset(TibetanMonthTable.Builder months,
+			TibetanMonthTableData precalculated) {
+		if (precalculated == null) {
+			return -1;
+		}
+
+		int size = precalculated.size();
+		int offset = months.getZladag(0) - precalculated.getFirstZladag();
+		if ((offset < 0) || (offset + months.size() > size)) {
+			if ((offset < size) && (offset + months.size() > 0)) {
+				LOG.warning("Precalculated month table does not match the calculated months and is ignored");
 			}
+			return -1;
 		}
+		return offset;
+	}
+
+	/**
+	 * get the precalculated information about the Tibetan months of a rabjung
+	 * 
+	 * @param rabjung
+	 *            the rabjung
+	 * @return a read-only table with one entry per Tibetan month or null if
+	 *         the rabjung is not supported; the table may start with the last
+	 *         month of the previous rabjung
+	 */
+	public TibetanMonthTable getMonthTable(int rabjung) {
+		return getMonthSegments().getSegment(rabjung);
 	}
 
 	/**
@@ -139,7 +321,8 @@ public class TibetanDateCalculation {
 	 * returned.
 	 * 
 	 * @param rabjung
-	 *            the rabjung to be used or -1 if any rabjung is allowed
+	 *            the rabjung to be used or -1 if any rabjung between
+	 *            getFirstRabjung() and getLastRabjung() is allowed
 	 * @param tibYear
 	 *            the year within the rabjung to be used or -1 if any year of
 	 *            the rabjung is allowed
@@ -154,9 +337,40 @@ public class TibetanDateCalculation {
 	 */
 	public DatePair[] getGregorianDateForTibetanDate(int rabjung, int tibYear,
 													 int tibMonth, int tibDay) {
+		return streamGregorianDatesForTibetanDate(rabjung, tibYear, tibMonth,
+				tibDay).toArray(DatePair[]::new);
+	}
+
+	/**
+	 * Get all matching gregorian dates for a given Tibetan date as a lazy
+	 * stream. The parameters are the same as for
+	 * {@link #getGregorianDateForTibetanDate(int, int, int, int)}; the stream
+	 * provides the same dates in the same order.
+	 * 
+	 * The dates are only calculated while the stream is consumed, so a query
+	 * with wildcards that is limited or filtered only pays for the dates
+	 * that are actually read. The stream can be run in parallel.
+	 * 
+	 * @param rabjung
+	 *            the rabjung to be used or -1 if any rabjung between
+	 *            getFirstRabjung() and getLastRabjung() is allowed
+	 * @param tibYear
+	 *            the year within the rabjung to be used or -1 if any year of
+	 *            the rabjung is allowed
+	 * @param tibMonth
+	 *            the month within the Tibetan year to be used or -1 if any
+	 *            month is allowed
+	 * @param tibDay
+	 *            the day within the Tibetan month to be used or -1 if any month
+	 *            is allowed
+	 * @return a sequential stream with all matching Tibetan dates and their
+	 *         corresponding Gregorian Dates
+	 */
+	public Stream<DatePair> streamGregorianDatesForTibetanDate(int rabjung,
+			int tibYear, int tibMonth, int tibDay) {
 
-		int startRab = rabjung > 0 ? rabjung : RABJUNG_START;
-		int endRab = rabjung > 0 ? rabjung : RABJUNG_END;
+		int startRab = rabjung > 0 ? rabjung : this.firstRabjung;
+		int endRab = rabjung > 0 ? rabjung : this.lastRabjung;
 
 		int startYear = tibYear > 0 ? tibYear : 1;
 		int endYear = tibYear > 0 ? tibYear : 60;
@@ -167,73 +381,43 @@ public class TibetanDateCalculation {
 		int startDay = tibDay > 0 ? tibDay : 1;
 		int endDay = tibDay > 0 ? tibDay : 30;
 
-		List<DatePair> result = new ArrayList<DatePair>();
-
-		for (int rab = startRab; rab <= endRab; rab++) {
-			for (int yr = startYear; yr <= endYear; yr++) {
-				for (int mn = startMonth; mn <= endMonth; mn++) {
-					for (int monthFlag = 0; monthFlag <= 2; monthFlag++) {
-						TibetanMonthInfo rec = getRecord(rab, yr, mn, monthFlag);
-						if (rec != null) {
-							for (int day = startDay; day <= endDay; day++) {
-								boolean skipped = ((day == rec.skip1) || (day == rec.skip2));
-								boolean doubled = ((day == rec.double1) || (day == rec.double2));
-
-								int dayDiff = day - 1;
-								if ((day > rec.skip1) && (rec.skip1 != 0)) {
-									dayDiff--;
-								}
-								if ((day > rec.skip2) && (rec.skip2 != 0)) {
-									dayDiff--;
-								}
-								if ((day > rec.double1) && (rec.double1 != 0)) {
-									dayDiff++;
-								}
-								if ((day > rec.double2) && (rec.double2 != 0)) {
-									dayDiff++;
-								}
-
-								Date date = addDays(rec.westernDate, dayDiff);
-								TibDate tibDate = new TibDate(rab, yr, mn,
-										monthFlag, day);
-
-								if (skipped) {
-									tibDate.isSkippedDay = true;
-									result.add(new DatePair(tibDate, null));
-								} else if (doubled) {
-									tibDate.doubleDayFlag = 1;
-									result.add(new DatePair(tibDate, date));
-
-									TibDate tibDate2 = new TibDate(rab, yr, mn,
-											monthFlag, day);
-									tibDate2.doubleDayFlag = 2;
-									Date date2 = addDays(date, 1);
-									result.add(new DatePair(tibDate2, date2));
-								} else {
-									result.add(new DatePair(tibDate, date));
-								}
-							}
-						}
-					}
-				}
-			}
-		}
-		return result.toArray(new DatePair[result.size()]);
+		return StreamSupport.stream(new TibetanDateSpliterator(
+				getMonthSegments(), startRab, endRab, startYear, endYear,
+				startMonth, endMonth, startDay, endDay), false);
 	}
 
 	/**
-	 * Add a number of days to a date
+	 * get a Date object for midnight at the beginning of a day in the default
+	 * time zone
 	 * 
-	 * @param date
-	 *            the date to which some days should be added
-	 * @param number
-	 *            the number of days that should be added
-	 * @return the resultant date after the addition
+	 * Most days are calculated directly from the offset of the time zone;
+	 * only days close to a change of the offset are calculated with a
+	 * GregorianCalendar because it resolves midnights that do not exist or
+	 * exist twice in its own way.
+	 * 
+	 * @param epochDay
+	 *            the day as number of days since 1970-01-01
+	 * @return the resulting Date object
 	 */
-	private Date addDays(Date date, int number) {
-		GregorianCalendar calendar = new GregorianCalendar();
-		calendar.setTime(date);
-		calendar.add(Calendar.DATE, number);
+	static Date toDate(long epochDay) {
+		TimeZone zone = TimeZone.getDefault();
+		long localTime = epochDay * MILLIS_PER_DAY;
+		int offset = zone.getOffset(localTime - zone.getRawOffset());
+		long time = localTime - offset;
+		if ((zone.getOffset(time) == offset)
+				&& (zone.getOffset(time - MILLIS_PER_DAY) == offset)
+				&& (zone.getOffset(time + MILLIS_PER_DAY) == offset)) {
+			return new Date(time);
+		}
+
+		LocalDate date = LocalDate.ofEpochDay(epochDay);
+
+		// use the proleptic Gregorian calendar just like LocalDate does
+		GregorianCalendar calendar = new GregorianCalendar(zone);
+		calendar.setGregorianChange(new Date(Long.MIN_VALUE));
+		calendar.clear();
+		calendar.set(date.getYear(), date.getMonthValue() - 1,
+				date.getDayOfMonth());
 		return calendar.getTime();
 	}
 
@@ -246,49 +430,95 @@ public class TibetanDateCalculation {
 	 *         because the Gregorian date is out of range
 	 */
 	public TibDate getTibetanDateForGregorianDate(Date d) {
-		d = stripTime(d);
-
-		for (int i = tibetanMonthRecords.size() - 1; i >= 0; i--) {
-			TibetanMonthInfo rec = tibetanMonthRecords.get(i);
-			if (rec.westernDate.compareTo(d) <= 0) {
-				int dayDiff = getDifferenceInDays(d, rec.westernDate) + 1;
-				int day = dayDiff;
+		return PackedTibDate.toTibDate(getPackedTibetanDate(toEpochDay(d)));
+	}
 
-				TibDate result = new TibDate(rec.rabjung, rec.tibYear,
-						rec.tibMonth, rec.monthFlag, day);
+	/**
+	 * get a Tibetan date for a Gregorian date
+	 * 
+	 * @param date
+	 *            the Gregorian date
+	 * @return the matching Tibetan date or NULL if no Tibetan date could be
+	 *         determined because the Gregorian date is out of range
+	 */
+	@Override
+	public TibDate getTibetanDateForGregorianDate(LocalDate date) {
+		return PackedTibDate.toTibDate(getPackedTibetanDate(date.toEpochDay()));
+	}
 
-				// correct for skipped days
-				if ((result.tibDay >= rec.skip1) && (rec.skip1 != 0)) {
-					result.tibDay++;
-				}
-				if ((result.tibDay >= rec.skip2) && (rec.skip2 != 0)) {
-					result.tibDay++;
-				}
+	/**
+	 * get a Tibetan date for a Gregorian date without creating any objects
+	 * 
+	 * @param epochDay
+	 *            the Gregorian date as number of days since 1970-01-01
+	 * @return the matching Tibetan date packed as described in
+	 *         {@link PackedTibDate} or {@link PackedTibDate#NONE} if the
+	 *         Gregorian date is out of range
+	 */
+	@Override
+	public long getPackedTibetanDate(long epochDay) {
+		TibetanMonthTable months = getMonthSegments().findSegment(epochDay);
+		if (months == null) {
+			return PackedTibDate.NONE;
+		}
+		int rec = months.findMonth(epochDay);
 
-				// correct for doubled days
-				if ((result.tibDay == rec.double1)
-						|| (result.tibDay == rec.double2)) {
-					result.doubleDayFlag = 1;
-				}
+		// the shape of the month gives the Tibetan day of each of its days
+		int day = months.getDay(rec, (int) (epochDay - months.getStartDay(rec)));
+		int tibDay = TibetanMonthShapes.getTibDay(day);
+		int doubleDayFlag = TibetanMonthShapes.getDoubleDayFlag(day);
 
-				if ((result.tibDay > rec.double1) && (rec.double1 != 0)) {
-					result.tibDay--;
-					if (result.tibDay == rec.double1) {
-						result.doubleDayFlag = 2;
-					}
-				}
-				if ((result.tibDay > rec.double2) && (rec.double2 != 0)) {
-					result.tibDay--;
-					if (result.tibDay == rec.double2) {
-						result.doubleDayFlag = 2;
-					}
-				}
+		return PackedTibDate.pack(months.getRabjung(rec),
+				months.getTibYear(rec), months.getTibMonth(rec),
+				months.getMonthFlag(rec), tibDay, doubleDayFlag, false);
+	}
 
-				return result;
-			}
+	@Override
+	public long getEpochDay(int rabjung, int tibYear, int tibMonth,
+			int monthFlag, int tibDay) {
+		if ((tibDay < 1) || (tibDay > 30)) {
+			return NO_DAY;
+		}
+		TibetanMonthTable months = getMonthSegments().findSegment(rabjung,
+				tibYear, tibMonth, monthFlag);
+		if (months == null) {
+			return NO_DAY;
 		}
+		int rec = months.findMonth(rabjung, tibYear, tibMonth, monthFlag);
+		if ((tibDay == months.getSkip1(rec))
+				|| (tibDay == months.getSkip2(rec))) {
+			return NO_DAY;
+		}
+		return months.getStartDay(rec) + months.getDayOffset(rec, tibDay);
+	}
 
-		return null;
+	/**
+	 * get a cursor that walks through consecutive Gregorian days starting at
+	 * a given day; this is much faster than converting each day of a range
+	 * on its own
+	 * 
+	 * @param epochDay
+	 *            the first day as number of days since 1970-01-01
+	 * @return a new cursor that is positioned on the given day
+	 */
+	public TibetanDayCursor getDayCursor(long epochDay) {
+		return new TibetanDayCursor(getMonthSegments(), epochDay);
+	}
+
+	/**
+	 * get the epoch day (number of days since 1970-01-01) of the calendar day
+	 * on which a Date falls in the default time zone. The offset of the time
+	 * zone is determined in the same way as GregorianCalendar does it so that
+	 * the result is consistent with the dates of the precalculated months.
+	 * 
+	 * @param date
+	 *            the date to be converted
+	 * @return the epoch day of the date
+	 */
+	private static int toEpochDay(Date date) {
+		long time = date.getTime();
+		long localTime = time + TimeZone.getDefault().getOffset(time);
+		return (int) Math.floorDiv(localTime, MILLIS_PER_DAY);
 	}
 
 	/**
@@ -347,23 +577,17 @@ public class TibetanDateCalculation {
 	/**
 	 * add a month record to the set of precalculated information
 	 */
-	private void addMonthRecord(int rabjung, int tibMonth, int year, int a2a,
-			int a2b, int mflg) {
+	private static void addMonthRecord(TibetanMonthTable.Builder months,
+			int rabjung, int tibMonth, int year, int a2a, int a2b, int mflg) {
 
 		if (year == 0) {
 			year = 60;
 			rabjung -= 1;
 		}
 
-		// adjust the month number in such a way that the 2nd month
-		// of rabjung 16 will be month 0 because the original program
-		// with all its interpolations starts to calculate from there.
-		// Months before that will have a negative month number.
-		int zladag = tibetanMonthRecords.size() - C_ZLADAG_OFFSET;
-
-		TibetanMonthInfo record = new TibetanMonthInfo(rabjung, year, tibMonth,
-				zladag, mflg, 0, 0, 0, 0, null);
-		tibetanMonthRecords.add(record);
+		// the global month number (zladag) of each month follows from its
+		// position in the table (see getFirstZladag)
+		months.addMonth(rabjung, year, tibMonth, mflg);
 	}
 
 	/**
@@ -371,11 +595,26 @@ public class TibetanDateCalculation {
 	 * is only used for debugging purposes
 	 */
 	String getPrecalculatedData() {
+		DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 		StringBuilder result = new StringBuilder();
 
+		TibetanMonthSegments segments = getMonthSegments();
 		result.append("RABJUNG\tYEAR\tMONTH\tDOUBLE_MONTH_FLAG\tZLADAG\tSKIP1\tSKIP2\tDOUBLE1\tDOUBLE2\n");
-		for (TibetanMonthInfo rec : tibetanMonthRecords) {
-			result.append(rec.toString());
+		for (int rabjung = this.firstRabjung; rabjung <= this.lastRabjung; rabjung++) {
+			TibetanMonthTable months = segments.getSegment(rabjung);
+			for (int i = 0; i < months.size(); i++) {
+				result.append(months.getRabjung(i)).append('\t')
+						.append(months.getTibYear(i)).append('\t')
+						.append(months.getTibMonth(i)).append('\t')
+						.append(months.getMonthFlag(i)).append('\t')
+						.append(months.getZladag(i)).append('\t')
+						.append(months.getSkip1(i)).append('\t')
+						.append(months.getSkip2(i)).append('\t')
+						.append(months.getDouble1(i)).append('\t')
+						.append(months.getDouble2(i)).append('\t')
+						.append(dateFormat.format(LocalDate.ofEpochDay(months
+								.getStartDay(i)))).append('\n');
+			}
 		}
 
 		return result.toString();
@@ -383,9 +622,10 @@ public class TibetanDateCalculation {
 
 	/**
 	 * internal helper routine: pre-calculate the position of various
-	 * astronomical bodies for the entire timespan in which the tool is working
+	 * astronomical bodies for a range of rabjungs
 	 */
-	private void calculateNormalSystem() {
+	private void calculateNormalSystem(TibetanMonthTable.Builder months,
+			int rabjungStart, int rabjungEnd) {
 		final int F_FIRST = 1;
 		final int F_SECOND = 2;
 		int ii;
@@ -398,11 +638,12 @@ public class TibetanDateCalculation {
 		int a, a1, a1r, a1z, a1a;
 		int b, b1r, b1z, b1a;
 
-		int totalYears = 0;
+		int totalYears;
 
-		for (r = RABJUNG_START; r <= RABJUNG_END; r++) {
+		for (r = rabjungStart; r <= rabjungEnd; r++) {
 			for (y = y_start; y <= y_end; y++) {
-				totalYears++;
+				// the years are counted from the 1st year of the 1st rabjung
+				totalYears = ((r - 1) * 60) + y;
 				for (m = 1; m <= 12; m++) {
 					if (m > 2) {
 						m1 = m;
@@ -416,36 +657,36 @@ public class TibetanDateCalculation {
 					// Calculate for y=any Tibetan year (1 to 60), m=any
 					// Tibetan month (1 to 12)
 					a = ((12 * y1) + m1) - 3;
-					a1 = ((2 * a) + 55) / 65;
+					a1 = ((2 * a) + this.intercalationOffset) / 65;
 					a1r = a1;
-					a1z = ((2 * a) + 55) % 65;
+					a1z = ((2 * a) + this.intercalationOffset) % 65;
 					a1z = (65 + a1z) % 65; // adjust for negative numbers
 					a1a = a + a1r;
 					a1a = (65 + a1a) % 65; // adjust for negative numbers
 
 					if ((a1z > 1) && (a1z < 48)) {
-						addMonthRecord(r, m, y, a1a, a1z, 0);
+						addMonthRecord(months, r, m, y, a1a, a1z, 0);
 					} else if ((a1z == 48) || (a1z == 49)) {
-						addMonthRecord(r, m, y, a1a, a1z, F_FIRST);
+						addMonthRecord(months, r, m, y, a1a, a1z, F_FIRST);
 					} else if ((a1z == 50) || (a1z == 51)) {
 						if (m > 1) {
-							addMonthRecord(r, (m - 1), y, a1a, a1z, F_SECOND);
+							addMonthRecord(months, r, (m - 1), y, a1a, a1z, F_SECOND);
 						} else {
-							addMonthRecord(r, 12, (y - 1), a1a, a1z, F_SECOND);
+							addMonthRecord(months, r, 12, (y - 1), a1a, a1z, F_SECOND);
 						}
 					} else if (a1z > 51) {
 						if (m > 1) {
-							addMonthRecord(r, (m - 1), y, a1a, a1z, 0);
+							addMonthRecord(months, r, (m - 1), y, a1a, a1z, 0);
 						} else {
-							addMonthRecord(r, 12, (y - 1), a1a, a1z, 0);
+							addMonthRecord(months, r, 12, (y - 1), a1a, a1z, 0);
 						}
 					} else if ((a1z == 0) || (a1z == 1)) {
 						if (m > 1) {
-							addMonthRecord(r, m - 1, y, a1a - 1, 0, 0);
-							addMonthRecord(r, m, y, a1a, a1z, 0);
+							addMonthRecord(months, r, m - 1, y, a1a - 1, 0, 0);
+							addMonthRecord(months, r, m, y, a1a, a1z, 0);
 						} else {
-							addMonthRecord(r, 12, (y - 1), (a1a - 1), 0, 0);
-							addMonthRecord(r, m, y, a1a, a1z, 0);
+							addMonthRecord(months, r, 12, (y - 1), (a1a - 1), 0, 0);
+							addMonthRecord(months, r, m, y, a1a, a1z, 0);
 						}
 					} else {
 						// error in 1st case statement
@@ -456,305 +697,307 @@ public class TibetanDateCalculation {
 		}
 	}
 
+	/**
+	 * get the global month number (zladag) of the first month that
+	 * calculateNormalSystem creates for a rabjung
+	 * 
+	 * The global month numbers are chosen so that month 2 of year 1 of rabjung
+	 * 16 is month number 0, because the original program with all its
+	 * interpolations starts to calculate from there. Months before that have
+	 * a negative month number.
+	 * 
+	 * @param rabjung
+	 *            the rabjung
+	 * @return the global month number of its first month
+	 */
+	int getFirstZladag(int rabjung) {
+		// the same calculation as for month 1 of year 1 in
+		// calculateNormalSystem
+		int totalYears = ((rabjung - 1) * 60) + 1;
+		int a = ((12 * (totalYears - 902)) + 13) - 3;
+		int a1z = Math.floorMod((2 * a) + this.intercalationOffset, 65);
+		int zladag = a + Math.floorDiv((2 * a) + this.intercalationOffset, 65);
+		if ((a1z == 0) || (a1z == 1)) {
+			// the month is preceded by an additional month
+			zladag--;
+		}
+		return zladag;
+	}
+
+	/**
+	 * get the Gregorian date of the first day of a Tibetan month
+	 * 
+	 * The corrected lunar weekday only tells the weekday on which a lunar day
+	 * ends. The day itself is found from the mean lunar weekday, which is
+	 * counted without removing the whole weeks: the corrected lunar weekday
+	 * never differs by more than one day from it.
+	 * 
+	 * @param zladag
+	 *            the global month number of the month
+	 * @return the epoch day of the first day of the month
+	 */
+	int getMonthStartDay(int zladag) {
+		return (int) (getLunarDayEndDay(zladag - 1, 30) + 1);
+	}
+
+	/**
+	 * get the Gregorian date on which a lunar day ends; this is the date that
+	 * has the number of the lunar day, unless the lunar day is skipped
+	 * 
+	 * @param zladag
+	 *            the global month number of the month
+	 * @param d
+	 *            the lunar day within the month (1..30)
+	 * @return the epoch day on which the lunar day ends
+	 */
+	long getLunarDayEndDay(int zladag, int d) {
+		return getLunarDayEnd(zladag, d) + this.epochDayOffset;
+	}
+
+	/**
+	 * get the day on which a lunar day ends, counted in the days of the
+	 * gza'-dhru
+	 */
+	private long getLunarDayEnd(int zladag, int d) {
+		long meanDay = Math.floorDiv((zladag * UNITS_PER_MONTH)
+				+ this.gzadhruOffset + (d * UNITS_PER_LUNAR_DAY), UNITS_PER_DAY);
+
+		int[] a3 = calculate_a_gzadhru(zladag, new int[5]);
+		int[] a4 = calculate_a_nyidhru(zladag, new int[5]);
+		int[] a5 = calculate_a_rilcha(zladag, new int[2]);
+		int weekday = calca13a(d, a3, a4, a5);
+
+		// the day with that weekday within one day of the mean day
+		return meanDay + Math.floorMod(weekday - meanDay + 1, 7) - 1;
+	}
+
+	/**
+	 * calculate the difference between the day count of the gza'-dhru and the
+	 * epoch day from the reference month of the system, e.g. the 1st day of
+	 * the 1st month of year 2 of rabjung 17, which is 1988-02-18 in the
+	 * Phugpa system
+	 */
+	private long calculateEpochDayOffset(TibetanCalendarParameters parameters) {
+		int rabjung = parameters.getReferenceRabjung();
+		TibetanMonthTable.Builder months = new TibetanMonthTable.Builder(
+				getFirstZladag(rabjung));
+		calculateNormalSystem(months, rabjung, rabjung);
+		int index = months.indexOf(rabjung, parameters.getReferenceYear(),
+				parameters.getReferenceMonth(),
+				parameters.getReferenceMonthFlag());
+		if (index < 0) {
+			throw new IllegalArgumentException("The reference month does not exist in the calendar system");
+		}
+		int zladag = months.getZladag(index);
+
+		return parameters.getReferenceDate().toEpochDay()
+				- (getLunarDayEnd(zladag - 1, 30) + 1);
+	}
+
 	// [2] For the gza'-dhru (root lunar weekday for the month)
 	// [B] Save: gza'-dhru (root lunar weekday for the month)=
 	// a3[0] a3[1] a3[2] a3[3] a3[4]
-	private static int[] calculate_a_gzadhru(int zladag) {
-		while (zladag < 0) {
-			// gzadhru calculations repeat every 39592 months
-			// --> transpose the calculations for negative month numbers
-			// into a positive month number at the same position of a later
-			// cycle. In this way we avoid calculating with negative month
-			// numbers and thereby yield the correct results
-			zladag += 39592;
-		}
-
-		int[] a3 = new int[5];
-		int a3er = ((480 * zladag) + 20) / 707;
-		a3[4] = (((480 * zladag) + 20) % 707);
-		int a3dr = (2 + a3er) / 6;
-		a3[3] = ((2 + a3er) % 6);
-		int a3cr = ((50 * zladag) + 53 + a3dr) / 60;
-		a3[2] = (((50 * zladag) + 53 + a3dr) % 60);
-		int a3br = ((31 * zladag) + 57 + a3cr) / 60;
-		a3[1] = (((31 * zladag) + 57 + a3cr) % 60);
-		int a3ar = (zladag + 6 + a3br) / 7;
-		a3[0] = ((zladag + 6 + a3br) % 7);
+	// the result is stored in the array a3 (5 elements) which is also returned
+	int[] calculate_a_gzadhru(int zladag, int[] a3) {
+		// gzadhru calculations repeat every 39592 months
+		// --> transpose the calculations for any month number into a month
+		// number at the same position of the first cycle. In this way we
+		// avoid calculating with negative or very large month numbers and
+		// thereby yield the correct results
+		zladag = Math.floorMod(zladag, 39592);
+
+		int[] root = this.gzadhruRoot;
+		int a3er = ((480 * zladag) + root[4]) / 707;
+		a3[4] = (((480 * zladag) + root[4]) % 707);
+		int a3dr = (root[3] + a3er) / 6;
+		a3[3] = ((root[3] + a3er) % 6);
+		int a3cr = ((50 * zladag) + root[2] + a3dr) / 60;
+		a3[2] = (((50 * zladag) + root[2] + a3dr) % 60);
+		int a3br = ((31 * zladag) + root[1] + a3cr) / 60;
+		a3[1] = (((31 * zladag) + root[1] + a3cr) % 60);
+		int a3ar = (zladag + root[0] + a3br) / 7;
+		a3[0] = ((zladag + root[0] + a3br) % 7);
 		return a3;
 	}
 
 	// [3] For the nyi-dhru (root sun position for the month)
 	// [B] Save: nyi-dhru (root sun position for the month)=
 	// a4[0] a4[1] a4[2] a4[3] a4[4]
-	private static int[] calculate_a_nyidhru(int zladag) {
-		while (zladag < 0) {
-			// nyidhru calculations repeat every 804 months
-			// --> transpose the calculations for negative month numbers
-			// into a positive month number at the same position of a later
-			// cycle. In this way we avoid calculating with negative month
-			// numbers and thereby yield the correct results
-			zladag += 804;
-		}
-
-		int[] a4 = new int[5];
-		int a4er = ((17 * zladag) + 32) / 67;
-		a4[4] = (((17 * zladag) + 32) % 67);
-		int a4dr = (zladag + 4 + a4er) / 6;
-		a4[3] = ((zladag + 4 + a4er) % 6);
-		int a4cr = ((58 * zladag) + 10 + a4dr) / 60;
-		a4[2] = (((58 * zladag) + 10 + a4dr) % 60);
-		int a4br = ((10 * zladag) + 9 + a4cr) / 60;
-		a4[1] = (((10 * zladag) + 9 + a4cr) % 60);
-		int a4ar = ((2 * zladag) + 25 + a4br) / 27;
-		a4[0] = (((2 * zladag) + 25 + a4br) % 27);
-
+	// the result is stored in the array a4 (5 elements) which is also returned
+	int[] calculate_a_nyidhru(int zladag, int[] a4) {
+		// nyidhru calculations repeat every 804 months --> take the result
+		// from the precalculated table for one cycle
+		int packed = this.nyidhruTable[Math.floorMod(zladag, NYIDHRU_PERIOD)];
+		a4[0] = packed >>> 22;
+		a4[1] = (packed >>> 16) & 0x3f;
+		a4[2] = (packed >>> 10) & 0x3f;
+		a4[3] = (packed >>> 7) & 0x7;
+		a4[4] = packed & 0x7f;
 		return a4;
 	}
 
+	/**
+	 * calculate the nyi-dhru of all months of one cycle
+	 * 
+	 * @param root
+	 *            the nyi-dhru of the month number 0
+	 * @return the packed nyi-dhru for each month of the cycle: a4[0] (bits
+	 *         22..26), a4[1] (bits 16..21), a4[2] (bits 10..15), a4[3] (bits
+	 *         7..9), a4[4] (bits 0..6)
+	 */
+	private static int[] calculateNyidhruTable(int[] root) {
+		int[] table = new int[NYIDHRU_PERIOD];
+		for (int zladag = 0; zladag < NYIDHRU_PERIOD; zladag++) {
+			int a4er = ((17 * zladag) + root[4]) / 67;
+			int a4e = (((17 * zladag) + root[4]) % 67);
+			int a4dr = (zladag + root[3] + a4er) / 6;
+			int a4d = ((zladag + root[3] + a4er) % 6);
+			int a4cr = ((58 * zladag) + root[2] + a4dr) / 60;
+			int a4c = (((58 * zladag) + root[2] + a4dr) % 60);
+			int a4br = ((10 * zladag) + root[1] + a4cr) / 60;
+			int a4b = (((10 * zladag) + root[1] + a4cr) % 60);
+			int a4a = (((2 * zladag) + root[0] + a4br) % 27);
+
+			table[zladag] = (a4a << 22) | (a4b << 16) | (a4c << 10) | (a4d << 7)
+					| a4e;
+		}
+		return table;
+	}
+
 	// [4] For ril-cha (root position in lunation cycle for the
 	// month)
 	// [B] Save: ril-cha (root position in lunation cycle for the
 	// month)= a5[0] a5[1]
-	private static int[] calculate_a_rilcha(int zladag) {
-		while (zladag < 0) {
-			// rilcha calculations repeat every 3528 months
-			// --> transpose the calculations for negative month numbers
-			// into a positive month number at the same position of a later
-			// cycle. In this way we avoid calculating with negative month
-			// numbers and thereby yield the correct results
-			zladag += 3528;
-		}
-
-		int[] a5 = new int[2];
-		int a5br = (zladag + 103) / 126;
-		a5[1] = ((zladag + 103) % 126);
-
-		int a5ar = ((2 * zladag) + 13 + a5br) / 28;
-		a5[0] = (((2 * zladag) + 13 + a5br) % 28);
-
+	// the result is stored in the array a5 (2 elements) which is also returned
+	int[] calculate_a_rilcha(int zladag, int[] a5) {
+		// rilcha calculations repeat every 3528 months --> take the result
+		// from the precalculated table for one cycle
+		int packed = this.rilchaTable[Math.floorMod(zladag, RILCHA_PERIOD)];
+		a5[0] = packed >>> 7;
+		a5[1] = packed & 0x7f;
 		return a5;
 	}
 
 	/**
-	 * calculate skipped and double days to the pre-calculated information
+	 * calculate the ril-cha of all months of one cycle
+	 * 
+	 * @param root
+	 *            the ril-cha of the month number 0
+	 * @return the packed ril-cha for each month of the cycle: a5[0] (bits
+	 *         7..11), a5[1] (bits 0..6)
 	 */
-	private void normalSystemAddSkippedAndDoubled() {
-		TibetanMonthInfo record = tibetanMonthRecords.get(0);
-
-		int[] a3 = calculate_a_gzadhru(record.zladag);
-		int[] a4 = calculate_a_nyidhru(record.zladag);
-		int[] a5 = calculate_a_rilcha(record.zladag);
-
-		int prev_a13 = calca13a(30, a3, a4, a5);
-
-		int recordNumber = tibetanMonthRecords.size();
-		for (int i = 1; i < recordNumber; i++) {
-			record = tibetanMonthRecords.get(i);
-			a3 = calculate_a_gzadhru(record.zladag);
-			a4 = calculate_a_nyidhru(record.zladag);
-			a5 = calculate_a_rilcha(record.zladag);
-
-			int aSkip1 = 0;
-			int aSkip2 = 0;
-			int aDbl1 = 0;
-			int aDbl2 = 0;
-			for (int j = 1; j <= 30; j++) {
-				int a13a = calca13a(j, a3, a4, a5);
-				if (a13a == prev_a13) {
-					if (aSkip1 == 0) {
-						aSkip1 = j;
-					} else if (aSkip2 == 0) {
-						aSkip2 = j;
-					} else {
-						System.out
-								.println("A_SKIP field filled up for month recno "
-										+ i + " (" + record + ")");
-					}
-				} else if (prev_a13 < 5) {
-					if (a13a == prev_a13 + 2) {
-						if (aDbl1 == 0) {
-							aDbl1 = j;
-						} else if (aDbl2 == 0) {
-							aDbl2 = j;
-						} else {
-							System.out
-									.println("A_DBL field filled up for month recno "
-											+ i + " (" + record + ")");
-						}
-					}
-				} else if (prev_a13 > 4) {
-					if (a13a == prev_a13 - 5) {
-						if (aDbl1 == 0) {
-							aDbl1 = j;
-						} else if (aDbl2 == 0) {
-							aDbl2 = j;
-						} else {
-							System.out
-									.println("A_DBL field filled up for month recno "
-											+ i);
-						}
-					}
-				}
-				prev_a13 = a13a;
-			}
-			record.skip1 = aSkip1;
-			record.skip2 = aSkip2;
-			record.double1 = aDbl1;
-			record.double2 = aDbl2;
+	private static short[] calculateRilchaTable(int[] root) {
+		short[] table = new short[RILCHA_PERIOD];
+		for (int zladag = 0; zladag < RILCHA_PERIOD; zladag++) {
+			int a5br = (zladag + root[1]) / 126;
+			int a5b = ((zladag + root[1]) % 126);
+			int a5a = (((2 * zladag) + root[0] + a5br) % 28);
+
+			table[zladag] = (short) ((a5a << 7) | a5b);
 		}
+		return table;
 	}
 
 	/**
-	 * add corresponding western date for the beginning of each Tibetan month to
-	 * the pre-calculated information
+	 * calculate skipped and double days to the pre-calculated information
+	 * 
+	 * The months are independent of each other, so they are calculated in
+	 * parallel on the common fork-join pool.
 	 */
-	private void addWesternDates() {
-		int recordCount = tibetanMonthRecords.size();
-		int entryRownum = locateRecord(17, 2, 1, 0);
-		assert entryRownum != -1;
-
-		GregorianCalendar calendar = new GregorianCalendar();
-		calendar.set(1988, 1, 18);
-		java.util.Date dFirst = stripTime(calendar.getTime());
-		java.util.Date dPrev = dFirst;
-
-		TibetanMonthInfo record = tibetanMonthRecords.get(entryRownum);
-		record.westernDate = dPrev;
-
-		int nCount = 30;
-		int aSkip1 = record.skip1;
-		int aSkip2 = record.skip2;
-		int aDbl1 = record.double1;
-		int aDbl2 = record.double2;
-
-		if ((aSkip1 != 0) && (aDbl1 == 0)) {
-			nCount--;
-		} else if ((aSkip2 != 0) && (aDbl2 == 0)) {
-			nCount--;
-		} else if ((aSkip1 == 0) && (aDbl1 != 0)) {
-			// error
-			assert false;
-		} else if ((aSkip2 == 0) && (aDbl2 != 0)) {
-			// error
-			assert false;
-		}
-		for (int i = entryRownum + 1; i < recordCount; i++) {
-			calendar.setTime(dPrev);
-			calendar.add(Calendar.DATE, nCount);
-			dPrev = calendar.getTime();
-
-			record = tibetanMonthRecords.get(i);
-			record.westernDate = dPrev;
-
-			nCount = 30;
-			aSkip1 = record.skip1;
-			aSkip2 = record.skip2;
-			aDbl1 = record.double1;
-			aDbl2 = record.double2;
-
-			if ((aSkip1 != 0) && (aDbl1 == 0)) {
-				nCount--;
-			}
-			if ((aSkip2 != 0) && (aDbl2 == 0)) {
-				nCount--;
-			} else if ((aSkip1 == 0) && (aDbl1 != 0)) {
-				// error
-				assert false;
-			} else if ((aSkip2 == 0) && (aDbl2 != 0)) {
-				// error
-				assert false;
-			}
-		}
-		dPrev = dFirst;
-		for (int i = entryRownum - 1; i >= 0; i--) {
-			nCount = 30;
-
-			record = tibetanMonthRecords.get(i);
-			aSkip1 = record.skip1;
-			aSkip2 = record.skip2;
-			aDbl1 = record.double1;
-			aDbl2 = record.double2;
-
-			if ((aSkip1 != 0) && (aDbl1 == 0)) {
-				nCount--;
-			} else if ((aSkip2 != 0) && (aDbl2 == 0)) {
-				nCount--;
-			} else if ((aSkip1 == 0) && (aDbl1 != 0)) {
-				// error
-				assert false;
-			} else if ((aSkip2 == 0) && (aDbl2 != 0)) {
-				// error
-				assert false;
-			}
-			calendar.setTime(dPrev);
-			calendar.add(Calendar.DATE, -nCount);
-			dPrev = calendar.getTime();
-
-			record.westernDate = dPrev;
-		}
-
+	private void normalSystemAddSkippedAndDoubled(
+			TibetanMonthTable.Builder months) {
+		// every month writes only its own entry of the table
+		IntStream.range(0, months.size()).parallel()
+				.forEach(i -> addSkippedAndDoubled(months, i));
 	}
 
 	/**
-	 * locate the pre-calculated month description record for a Tibetan month
+	 * calculate skipped and double days of one month
 	 * 
-	 * @param rabjung
-	 *            rabjung to search for
-	 * @param tibYear
-	 *            year to search for
-	 * @param tibMonth
-	 *            month to search for
-	 * @param monthFlag
-	 *            0: return the record if the month is a non-doubled month and
-	 *            null if this month is a doubled month; 1: return the first
-	 *            month of a double month and return null if no this month is no
-	 *            double month; 2: return the second month of a double month and
-	 *            return null if no this month is no double month;
-	 * @return the record for the matching Tibetan date or null if no record
-	 *         matches the given information
+	 * @param months
+	 *            the pre-calculated information
+	 * @param i
+	 *            the position of the month
 	 */
-	private TibetanMonthInfo getRecord(int rabjung, int tibYear, int tibMonth,
-			int monthFlag) {
-		int recPos = locateRecord(rabjung, tibYear, tibMonth, monthFlag);
-
-		if (recPos != -1) {
-			return tibetanMonthRecords.get(recPos);
+	private void addSkippedAndDoubled(TibetanMonthTable.Builder months,
+			int i) {
+		int zladag = months.getZladag(i);
+
+		int[] a13 = new int[31];
+		computeMonthLunarDays(zladag, a13);
+		int prev_a13 = a13[0];
+
+		int aSkip1 = 0;
+		int aSkip2 = 0;
+		int aDbl1 = 0;
+		int aDbl2 = 0;
+		for (int j = 1; j <= 30; j++) {
+			int a13a = a13[j];
+			if (a13a == prev_a13) {
+				if (aSkip1 == 0) {
+					aSkip1 = j;
+				} else if (aSkip2 == 0) {
+					aSkip2 = j;
+				} else {
+					logFullMonthRecord("skipped", zladag);
+				}
+			} else if (prev_a13 < 5) {
+				if (a13a == prev_a13 + 2) {
+					if (aDbl1 == 0) {
+						aDbl1 = j;
+					} else if (aDbl2 == 0) {
+						aDbl2 = j;
+					} else {
+						logFullMonthRecord("doubled", zladag);
+					}
+				}
+			} else if (prev_a13 > 4) {
+				if (a13a == prev_a13 - 5) {
+					if (aDbl1 == 0) {
+						aDbl1 = j;
+					} else if (aDbl2 == 0) {
+						aDbl2 = j;
+					} else {
+						logFullMonthRecord("doubled", zladag);
+					}
+				}
+			}
+			prev_a13 = a13a;
 		}
+		months.setSkippedAndDoubled(i, aSkip1, aSkip2, aDbl1, aDbl2);
+	}
 
-		return null;
+	/**
+	 * report a month with more skipped or doubled days than the month table
+	 * can hold; this only happens far away from the frequently used rabjungs.
+	 * The start of the following months is not affected (see
+	 * addWesternDates), but the days of this month are not exact.
+	 */
+	private static void logFullMonthRecord(String kind, int zladag) {
+		LOG.log(Level.WARNING,
+				"Month {0} has more than two {1} days, only the first two are kept",
+				new Object[] { zladag, kind });
 	}
 
 	/**
-	 * locate the position of the pre-calculated record for a Tibetan month
+	 * add corresponding western date for the beginning of each Tibetan month to
+	 * the pre-calculated information
 	 * 
-	 * @param rabjung
-	 *            rabjung to search for
-	 * @param tibYear
-	 *            year to search for
-	 * @param tibMonth
-	 *            month to search for
-	 * @param monthFlag
-	 *            0: return the record if the month is a non-doubled month and
-	 *            -1 if this month is a doubled month; 1: return the first month
-	 *            of a double month and return -1 if no this month is no double
-	 *            month; 2: return the second month of a double month and return
-	 *            -1 if no this month is no double month;
-	 * @return the record number of the matching Tibetan date or -1 if no record
-	 *         matches the given information
+	 * @return the finished table with all pre-calculated information
 	 */
-	private int locateRecord(int rabjung, int tibYear, int tibMonth,
-			int monthFlag) {
-		int recordCount = tibetanMonthRecords.size();
-		for (int pos = recordCount - 1; pos >= 0; pos--) {
-			TibetanMonthInfo rec = tibetanMonthRecords.get(pos);
-			if ((rec.rabjung == rabjung) && (rec.tibYear == tibYear)
-					&& (rec.tibMonth == tibMonth)
-					&& (monthFlag == rec.monthFlag)) {
-				return pos;
-			}
+	private TibetanMonthTable addWesternDates(TibetanMonthTable.Builder months) {
+		int recordCount = months.size();
+
+		// the start of each month is calculated directly instead of counting
+		// the days of the previous months: far away from the supported
+		// rabjungs there are a few months with more than two skipped days,
+		// which cannot be represented in the table
+		for (int i = 0; i < recordCount; i++) {
+			months.setStartDay(i, getMonthStartDay(months.getZladag(i)));
 		}
 
-		return -1;
+		int endDay = getMonthStartDay(months.getZladag(recordCount - 1) + 1);
+		return months.build(endDay);
 	}
 
 	// [10] Print from each record:
@@ -772,34 +1015,14 @@ public class TibetanDateCalculation {
 	// gza'-dhru (root lunar weekday) = b3[1] b3[2] b3[3]
 	// nyi-dhru (root sun position) = b4[1] b4[2] b4[3] b4[4] b4[5]
 	// ril-cha (root position in lunation cycle) = b5[1] b5[2]
-	private int calca13a(int d, int[] a3, int[] a4, int[] a5) {
+	//
+	// Only the corrected lunar weekday a13[0] is returned; the kernel does not
+	// allocate any objects because it is called for every day of every month
+	int calca13a(int d, int[] a3, int[] a4, int[] a5) {
 		int a6er, a6ez, a6dr, a6dz, a6cr, a6cz, a6br, a6bz, a6ar, a6az;
 		int a7er, a7ez, a7dr, a7dz, a7cr, a7cz, a7br, a7bz, a7ar, a7az;
 		int a8er, a8ez, a8dr, a8dz, a8cr, a8cz, a8br, a8bz, a8ar, a8az;
 		int a9er, a9ez, a9dr, a9dz, a9cr, a9cz, a9br, a9bz, a9ar, a9az;
-		/* int[][] a10sm; */int a10r, a10z, a10s, a10m;
-		int a10a2r, a10a2z, a10a3r, a10a3z, a10a4r, a10a4z, a10a5r, a10a5z;
-		// LOCAL a10a2,a10a3,a10a4,a10a5
-		int a10b2, a10b3, a10b4, a10b5;
-		int a10c1, a10c2, a10c3, a10c4, a10c5;
-		int a10d1, a10d2, a10d3, a10d4, a10d5;
-		int a10e1, a10e2, a10e3, a10e4, a10e5;
-		int a9az1, a9az2, a9bz1;
-		int a11a1, a11a2, a11a3, a11a4, a11a5;
-		int a11b1 = 0, a11b2 = 0, a11b3, a11b4, a11b5;
-		int a11cr, a11cz; /* int[][] a11csm */
-		int a11cs, a11cm;
-		int a11d2, a11d3r, a11d3z, a11d4r, a11d4z, a11d5r, a11d5z;
-		int a11e2r, a11e2z, a11e3r, a11e3z, a11e4r, a11e4z, a11e5r, a11e5z;
-		int a11f2 = 0, a11f3 = 0, a11f4 = 0, a11f5 = 0;
-		int a10e5ar, a10e5az;
-		int a11g1, a11g2, a11g3, a11g4, a11g5;
-		int a11h1, a11h2, a11h3, a11h4;
-		int a11i1, a11i2, a11i3, a11i4, a11i5;
-		int a11j1, a11j2, a11j3, a11j4;
-		int ii, jj; /* int[][] aUnits; */
-		/* int[] a12; int[] a13; int[][] aRetval; */
-		/* int[] a9; */
 
 		// a6: gza'-rtag (lunar weekday daily-motion constant)
 		a6er = (16 * d) / 707;
@@ -849,16 +1072,150 @@ public class TibetanDateCalculation {
 		a9ar = (a4[0] + a8az + a9br) / 27;
 		a9az = (a4[0] + a8az + a9br) % 27;
 
-		int[][] a10sm = { { 0, 5 }, { 5, 5 }, { 10, 5 }, { 15, 4 }, { 19, 3 },
-				{ 22, 2 }, { 24, 1 }, { 25, 1 }, { 24, 2 }, { 22, 3 },
-				{ 19, 4 }, { 15, 5 }, { 10, 5 }, { 5, 5 } };
-		a10r = (a5[0] + d) / 14;
-		a10z = (a5[0] + d) % 14;
-		a10s = a10sm[a10z][0];
-		a10m = a10sm[a10z][1];
+		return calca13aFromMean(a7az, a7bz, a7cz, a7dz, a7ez, a9az, a9bz, a9cz,
+				a9dz, a9ez, a5[0] + d, a5[1]);
+	}
+
+	/**
+	 * calculate the corrected lunar weekdays of the lunar days 1..30 of a
+	 * month in one pass
+	 * 
+	 * The mean lunar weekday and the mean sun position advance by a constant
+	 * amount from one lunar day to the next, so they are carried forward from
+	 * day to day instead of being calculated from the root figures for each
+	 * day. The result is identical to calling calca13a for each day.
+	 * 
+	 * @param zladag
+	 *            the global month number
+	 * @param out
+	 *            array with at least 31 elements that receives the corrected
+	 *            lunar weekday of the 30th lunar day of the previous month at
+	 *            index 0 and that of lunar day j of this month at index j
+	 */
+	void computeMonthLunarDays(int zladag, int[] out) {
+		int[] a3 = new int[5];
+		int[] a4 = new int[5];
+		int[] a5 = new int[2];
+
+		// the last day of the previous month
+		calculate_a_gzadhru(zladag - 1, a3);
+		calculate_a_nyidhru(zladag - 1, a4);
+		calculate_a_rilcha(zladag - 1, a5);
+		out[0] = calca13a(30, a3, a4, a5);
+
+		calculate_a_gzadhru(zladag, a3);
+		calculate_a_nyidhru(zladag, a4);
+		calculate_a_rilcha(zladag, a5);
+
+		// gza'-bar and nyi-bar at lunar day 0 are the root figures themselves
+		int a7az = a3[0], a7bz = a3[1], a7cz = a3[2], a7dz = a3[3], a7ez = a3[4];
+		int a9az = a4[0], a9bz = a4[1], a9cz = a4[2], a9dz = a4[3], a9ez = a4[4];
+		int a10 = a5[0];
+
+		for (int d = 1; d <= 30; d++) {
+			// add gza'-rtag for one day: 0;59,3,4,16 (units 7, 60, 60, 6, 707)
+			a7ez += 16;
+			a7dz += 4;
+			a7cz += 3;
+			a7bz += 59;
+			if (a7ez >= 707) {
+				a7ez -= 707;
+				a7dz++;
+			}
+			if (a7dz >= 6) {
+				a7dz -= 6;
+				a7cz++;
+			}
+			if (a7cz >= 60) {
+				a7cz -= 60;
+				a7bz++;
+			}
+			if (a7bz >= 60) {
+				a7bz -= 60;
+				a7az++;
+			}
+			if (a7az >= 7) {
+				a7az -= 7;
+			}
 
-		a10a2r = (a5[1] * a10m) / 126;
-		a10a2z = (a5[1] * a10m) % 126;
+			// add nyi-rtag for one day: 0;4,21,5,43 (units 27, 60, 60, 6, 67)
+			a9ez += 43;
+			a9dz += 5;
+			a9cz += 21;
+			a9bz += 4;
+			if (a9ez >= 67) {
+				a9ez -= 67;
+				a9dz++;
+			}
+			if (a9dz >= 6) {
+				a9dz -= 6;
+				a9cz++;
+			}
+			if (a9cz >= 60) {
+				a9cz -= 60;
+				a9bz++;
+			}
+			if (a9bz >= 60) {
+				a9bz -= 60;
+				a9az++;
+			}
+			if (a9az >= 27) {
+				a9az -= 27;
+			}
+
+			a10++;
+			out[d] = calca13aFromMean(a7az, a7bz, a7cz, a7dz, a7ez, a9az, a9bz,
+					a9cz, a9dz, a9ez, a10, a5[1]);
+		}
+	}
+
+	/**
+	 * calculate the corrected lunar weekday of a lunar day from its mean lunar
+	 * weekday and its mean sun position
+	 * 
+	 * @param a7az
+	 *            gza'-bar (mean lunar weekday), together with a7bz ... a7ez
+	 * @param a9az
+	 *            nyi-bar (mean sun position), together with a9bz ... a9ez
+	 * @param a10
+	 *            position in the lunation cycle: ril-cha a5[0] plus lunar day
+	 * @param a5b
+	 *            second part of the ril-cha: a5[1]
+	 * @return the corrected lunar weekday a13[0]
+	 */
+	private int calca13aFromMean(int a7az, int a7bz, int a7cz, int a7dz,
+			int a7ez, int a9az, int a9bz, int a9cz, int a9dz, int a9ez,
+			int a10, int a5b) {
+		int a10r, a10z, a10s, a10m;
+		int a10a2r, a10a2z, a10a3r, a10a3z, a10a4r, a10a4z, a10a5r, a10a5z;
+		// LOCAL a10a2,a10a3,a10a4,a10a5
+		int a10b2, a10b3, a10b4, a10b5;
+		int a10c1, a10c2, a10c3, a10c4, a10c5;
+		int a10d1, a10d2, a10d3, a10d4, a10d5;
+		int a10e1, a10e2, a10e3, a10e4, a10e5;
+		int a9az1, a9az2, a9bz1;
+		int a11a1, a11a2, a11a3, a11a4, a11a5;
+		int a11b1 = 0, a11b2 = 0, a11b3, a11b4, a11b5;
+		int a11cr, a11cz; /* int[][] a11csm */
+		int a11cs, a11cm;
+		int a11d2, a11d3r, a11d3z, a11d4r, a11d4z, a11d5r, a11d5z;
+		int a11e2r, a11e2z, a11e3r, a11e3z, a11e4r, a11e4z, a11e5r, a11e5z;
+		int a11f2 = 0, a11f3 = 0, a11f4 = 0, a11f5 = 0;
+		int a10e5ar, a10e5az;
+		int a11g1, a11g2, a11g3, a11g4, a11g5;
+		int a11h1, a11h2, a11h3, a11h4;
+		int a11i1, a11i2, a11i3, a11i4, a11i5;
+		int a11j1, a11j2, a11j3, a11j4;
+		int a12_0, a12_1, a12_2, a12_3, a12_4;
+		int a13_0 = 0, a13_1 = 0, a13_2 = 0, a13_3 = 0, a13_4 = 0, a13_5 = 0;
+
+		a10r = a10 / 14;
+		a10z = a10 % 14;
+		a10s = this.a10Steps[a10z];
+		a10m = this.a10Multipliers[a10z];
+
+		a10a2r = (a5b * a10m) / 126;
+		a10a2z = (a5b * a10m) % 126;
 		// a10a2 = (a5[1]*a10m)/126
 		a10a3r = (60 * a10a2z) / 126;
 		a10a3z = (60 * a10a2z) % 126;
@@ -993,12 +1350,10 @@ public class TibetanDateCalculation {
 		a11b5 = a11a5;
 		a11cr = ((60 * a11b1) + a11b2) / 135;
 		a11cz = ((60 * a11b1) + a11b2) % 135;
-		int[][] a11csm = { { 0, 6 }, { 6, 4 }, { 10, 1 }, { 11, 1 }, { 10, 4 },
-				{ 6, 6 } };
 		// a11cs = a11csm[a11cr + 1,1];
-		a11cs = a11csm[a11cr][0];
+		a11cs = this.a11cSteps[a11cr];
 		// a11cm = a11csm[a11cr + 1,2];
-		a11cm = a11csm[a11cr][1];
+		a11cm = this.a11cMultipliers[a11cr];
 		a11d5r = (a9ez * a11cm) / 67;
 		a11d5z = (a9ez * a11cm) % 67;
 		a11d4r = ((a9dz * a11cm) + a11d5r) / 6;
@@ -1031,8 +1386,6 @@ public class TibetanDateCalculation {
 
 		// a12: nyi-dag (corrected sun position)
 		// a13: gza'-dag (corrected lunar weekday)
-		int[] a12 = new int[5];
-		int[] a13 = new int[6];
 		a10e5ar = (67 * a10e5) / 707;
 		a10e5az = (67 * a10e5) % 707;
 
@@ -1043,76 +1396,76 @@ public class TibetanDateCalculation {
 			a11g4 = a9dz + a11f4;
 			a11g5 = a9ez + a11f5;
 			if (a11g5 >= 67) {
-				a12[4] = a11g5 - 67;
+				a12_4 = a11g5 - 67;
 				a11h4 = a11g4 + 1;
 			} else {
-				a12[4] = a11g5;
+				a12_4 = a11g5;
 				a11h4 = a11g4;
 			}
 			if (a11h4 >= 6) {
-				a12[3] = a11h4 - 6;
+				a12_3 = a11h4 - 6;
 				a11h3 = a11g3 + 1;
 			} else {
-				a12[3] = a11h4;
+				a12_3 = a11h4;
 				a11h3 = a11g3;
 			}
 			if (a11h3 >= 60) {
-				a12[2] = a11h3 - 60;
+				a12_2 = a11h3 - 60;
 				a11h2 = a11g2 + 1;
 			} else {
-				a12[2] = a11h3;
+				a12_2 = a11h3;
 				a11h2 = a11g2;
 			}
 			if (a11h2 >= 60) {
-				a12[1] = a11h2 - 60;
+				a12_1 = a11h2 - 60;
 				a11h1 = a11g1 + 1;
 			} else {
-				a12[1] = a11h2;
+				a12_1 = a11h2;
 				a11h1 = a11g1;
 			}
 			if (a11h1 >= 27) {
-				a12[0] = a11h1 - 27;
+				a12_0 = a11h1 - 27;
 			} else {
-				a12[0] = a11h1;
+				a12_0 = a11h1;
 			}
 			a11i1 = a10e1;
 			a11i2 = a10e2 + a11f2;
 			a11i3 = a10e3 + a11f3;
 			a11i4 = a10e4 + a11f4;
 			a11i5 = a10e5ar + a11f5;
-			a13[5] = a10e5az;
+			a13_5 = a10e5az;
 			if (a11i5 >= 67) {
-				a13[4] = a11i5 - 67;
+				a13_4 = a11i5 - 67;
 				a11j4 = a11i4 + 1;
 			} else {
-				a13[4] = a11i5;
+				a13_4 = a11i5;
 				a11j4 = a11i4;
 			}
 			if (a11j4 >= 6) {
-				a13[3] = a11j4 - 6;
+				a13_3 = a11j4 - 6;
 				a11j3 = a11i3 + 1;
 			} else {
-				a13[3] = a11j4;
+				a13_3 = a11j4;
 				a11j3 = a11i3;
 			}
 			if (a11j3 >= 60) {
-				a13[2] = a11j3 - 60;
+				a13_2 = a11j3 - 60;
 				a11j2 = a11i2 + 1;
 			} else {
-				a13[2] = a11j3;
+				a13_2 = a11j3;
 				a11j2 = a11i2;
 			}
 			if (a11j2 >= 60) {
-				a13[1] = a11j2 - 60;
+				a13_1 = a11j2 - 60;
 				a11j1 = a11i1 + 1;
 			} else {
-				a13[1] = a11j2;
+				a13_1 = a11j2;
 				a11j1 = a11i1;
 			}
 			if (a11j1 >= 7) {
-				a13[0] = a11j1 - 7;
+				a13_0 = a11j1 - 7;
 			} else {
-				a13[0] = a11j1;
+				a13_0 = a11j1;
 			}
 		}
 		if (((a11a1 == 13) && (a11a2 < 30)) || (a11a1 < 13)) {
@@ -1122,32 +1475,32 @@ public class TibetanDateCalculation {
 			a11g4 = a9dz - a11f4;
 			a11g5 = a9ez - a11f5;
 			if (a11f2 > a9bz) {
-				a12[0] = a11g1 - 1;
+				a12_0 = a11g1 - 1;
 				a11h2 = 60 + a11g2;
 			} else {
-				a12[0] = a11g1;
+				a12_0 = a11g1;
 				a11h2 = a11g2;
 			}
 			if (a11f3 > a9cz) {
-				a12[1] = a11h2 - 1;
+				a12_1 = a11h2 - 1;
 				a11h3 = 60 + a11g3;
 			} else {
-				a12[1] = a11h2;
+				a12_1 = a11h2;
 				a11h3 = a11g3;
 			}
 			if (a11f4 > a9dz) {
-				a12[2] = a11h3 - 1;
+				a12_2 = a11h3 - 1;
 				a11h4 = 6 + a11g4;
 			} else {
-				a12[2] = a11h3;
+				a12_2 = a11h3;
 				a11h4 = a11g4;
 			}
 			if (a11f5 > a9ez) {
-				a12[3] = a11h4 - 1;
-				a12[4] = 67 + a11g5;
+				a12_3 = a11h4 - 1;
+				a12_4 = 67 + a11g5;
 			} else {
-				a12[3] = a11h4;
-				a12[4] = a11g5;
+				a12_3 = a11h4;
+				a12_4 = a11g5;
 			}
 			a11i1 = a10e1;
 			a11i2 = a10e2 - a11f2;
@@ -1155,51 +1508,61 @@ public class TibetanDateCalculation {
 			a11i4 = a10e4 - a11f4;
 			a11i5 = a10e5ar - a11f5 - 1;
 			// a13[6] = 707-a10e5az;
-			a13[5] = 707 - a10e5az;
+			a13_5 = 707 - a10e5az;
 			if (a11f2 > a10e2) {
-				a13[0] = a11i1 - 1;
+				a13_0 = a11i1 - 1;
 				a11j2 = 60 + a11i2;
 			} else {
-				a13[0] = a11i1;
+				a13_0 = a11i1;
 				a11j2 = a11i2;
 			}
 			if (a11f3 > a10e3) {
-				a13[1] = a11j2 - 1;
+				a13_1 = a11j2 - 1;
 				a11j3 = 60 + a11i3;
 			} else {
-				a13[1] = a11j2;
+				a13_1 = a11j2;
 				a11j3 = a11i3;
 			}
 			if (a11f4 > a10e4) {
-				a13[2] = a11j3 - 1;
+				a13_2 = a11j3 - 1;
 				a11j4 = 6 + a11i4;
 			} else {
-				a13[2] = a11j3;
+				a13_2 = a11j3;
 				a11j4 = a11i4;
 			}
 			if ((a11f5 - 1) > a10e5ar) {
-				a13[3] = a11j4 - 1;
-				a13[4] = 67 + a11i5;
+				a13_3 = a11j4 - 1;
+				a13_4 = 67 + a11i5;
 			} else {
-				a13[3] = a11j4;
-				a13[4] = a11i5;
+				a13_3 = a11j4;
+				a13_4 = a11i5;
 			}
 		}
-		int[] a9 = { a9az, a9bz, a9cz, a9dz, a9ez };
-		int[][] aRetval = { a12, a13, a9 };
-		int[][] aUnits = { { 27, 60, 60, 6, 67 }, { 7, 60, 60, 6, 67, 707 } };
-
-		for (ii = 0; ii <= 1; ii++) {
-			for (jj = aRetval[ii].length - 1; jj >= 0; jj--) {
-				if (aRetval[ii][jj] < 0) {
-					aRetval[ii][jj] += aUnits[ii][jj];
-					if (jj != 0) {
-						aRetval[ii][jj - 1] -= 1;
-					}
-				}
-			}
+		// normalize the mixed-radix number a13 (units 7, 60, 60, 6, 67, 707)
+		if (a13_5 < 0) {
+			a13_5 += 707;
+			a13_4 -= 1;
+		}
+		if (a13_4 < 0) {
+			a13_4 += 67;
+			a13_3 -= 1;
+		}
+		if (a13_3 < 0) {
+			a13_3 += 6;
+			a13_2 -= 1;
+		}
+		if (a13_2 < 0) {
+			a13_2 += 60;
+			a13_1 -= 1;
+		}
+		if (a13_1 < 0) {
+			a13_1 += 60;
+			a13_0 -= 1;
+		}
+		if (a13_0 < 0) {
+			a13_0 += 7;
 		}
-		return a13[0];
+		return a13_0;
 	}
 /*
 	public static final void main(String[] args) throws IOException {
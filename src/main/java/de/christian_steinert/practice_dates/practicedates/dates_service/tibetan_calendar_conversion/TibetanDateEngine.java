@@ -0,0 +1,86 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import java.time.LocalDate;
+
+/**
+ * The basic conversions between Gregorian and Tibetan dates that all
+ * implementations of the Tibetan calendar provide.
+ *
+ * Two implementations are available: {@link TibetanDateCalculation} keeps
+ * tables with the Tibetan months and offers additional queries over ranges
+ * of dates, while {@link ArithmeticTibetanDateEngine} calculates each date
+ * on its own and needs neither tables nor any preparation.
+ */
+public interface TibetanDateEngine {
+	/** epoch day that is returned for Tibetan dates without Gregorian date */
+	long NO_DAY = Long.MIN_VALUE;
+
+	/** name of the engine that uses the month tables */
+	String TABLE = "table";
+
+	/** name of the engine that calculates each date on its own */
+	String ARITHMETIC = "arithmetic";
+
+	/**
+	 * get a Tibetan date for a Gregorian date without creating any objects
+	 *
+	 * @param epochDay
+	 *            the Gregorian date as number of days since 1970-01-01
+	 * @return the matching Tibetan date packed as described in
+	 *         {@link PackedTibDate} or {@link PackedTibDate#NONE} if the
+	 *         Gregorian date is out of range
+	 */
+	long getPackedTibetanDate(long epochDay);
+
+	/**
+	 * get the Gregorian date of a Tibetan date
+	 *
+	 * @param rabjung
+	 *            number of the Tibetan 60-year-cycle
+	 * @param tibYear
+	 *            number of the year within the rabjung (1..60)
+	 * @param tibMonth
+	 *            number of the Tibetan month (1..12)
+	 * @param monthFlag
+	 *            0: normal month, 1: first month of a double month, 2: second
+	 *            month of a double month
+	 * @param tibDay
+	 *            number of the day within the Tibetan month (1..30)
+	 * @return the Gregorian date as number of days since 1970-01-01 (the
+	 *         first of the two days of a doubled day) or {@link #NO_DAY} if
+	 *         the day is skipped, the month does not exist or is out of range
+	 */
+	long getEpochDay(int rabjung, int tibYear, int tibMonth, int monthFlag,
+			int tibDay);
+
+	/**
+	 * get a Tibetan date for a Gregorian date
+	 *
+	 * @param date
+	 *            the Gregorian date
+	 * @return the matching Tibetan date or NULL if no Tibetan date could be
+	 *         determined because the Gregorian date is out of range
+	 */
+	default TibDate getTibetanDateForGregorianDate(LocalDate date) {
+		return TibDate.of(getPackedTibetanDate(date.toEpochDay()));
+	}
+
+	/**
+	 * get an engine by its name
+	 *
+	 * @param name
+	 *            {@link #TABLE} or {@link #ARITHMETIC}
+	 * @return a new engine
+	 * @throws IllegalArgumentException
+	 *             if there is no engine with that name
+	 */
+	static TibetanDateEngine forName(String name) {
+		if (TABLE.equals(name)) {
+			return new TibetanDateCalculation();
+		} else if (ARITHMETIC.equals(name)) {
+			return new ArithmeticTibetanDateEngine();
+		}
+		throw new IllegalArgumentException("Unknown Tibetan date engine: "
+				+ name);
+	}
+}
@@ -0,0 +1,219 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Provides the Gregorian dates of all Tibetan dates that match a query one
+ * after the other.
+ *
+ * The Tibetan months of the query are numbered consecutively (rabjung, year,
+ * month, month flag), so that each month can be looked up directly in the
+ * month tables and the range of months can be split for parallel streams.
+ * The results are only created when they are consumed, so a stream that is
+ * limited or short-circuited only pays for the dates it actually reads.
+ */
+final class TibetanDateSpliterator implements Spliterator<DatePair> {
+	/** the month tables that are searched */
+	private final TibetanMonthSegments monthSegments;
+
+	private final int startRab;
+	private final int startYear;
+	private final int yearCount;
+	private final int startMonth;
+	private final int monthCount;
+	private final int startDay;
+	private final int endDay;
+
+	/** number of the next month of the query that has not been started */
+	private long index;
+
+	/** number of the first month of the query that is not covered */
+	private final long fence;
+
+	/** table of the current month or null if no month is in progress */
+	private TibetanMonthTable months;
+
+	/** position of the current month in months */
+	private int rec;
+
+	private int rab;
+	private int yr;
+	private int mn;
+	private int monthFlag;
+
+	/** the next day of the current month */
+	private int day;
+
+	/**
+	 * true if the second occurrence of the previous day has to be provided
+	 * next because it is a doubled day
+	 */
+	private boolean secondOfDouble;
+
+	/**
+	 * Constructor; all parameters must be valid numbers (no wildcards)
+	 *
+	 * @param monthSegments
+	 *            the month tables to be searched
+	 * @param startRab
+	 *            first rabjung
+	 * @param endRab
+	 *            last rabjung
+	 * @param startYear
+	 *            first year within each rabjung
+	 * @param endYear
+	 *            last year within each rabjung
+	 * @param startMonth
+	 *            first month within each year
+	 * @param endMonth
+	 *            last month within each year
+	 * @param startDay
+	 *            first day within each month
+	 * @param endDay
+	 *            last day within each month
+	 */
+	TibetanDateSpliterator(TibetanMonthSegments monthSegments, int startRab,
+			int endRab, int startYear, int endYear, int startMonth,
+			int endMonth, int startDay, int endDay) {
+		this(monthSegments, startRab, endYear - startYear + 1, startYear,
+				endMonth - startMonth + 1, startMonth, startDay, endDay, 0,
+				(endRab - (long) startRab + 1) * (endYear - startYear + 1)
+						* (endMonth - startMonth + 1) * 3);
+	}
+
+	private TibetanDateSpliterator(TibetanMonthSegments monthSegments,
+			int startRab, int yearCount, int startYear, int monthCount,
+			int startMonth, int startDay, int endDay, long index, long fence) {
+		this.monthSegments = monthSegments;
+		this.startRab = startRab;
+		this.yearCount = yearCount;
+		this.startYear = startYear;
+		this.monthCount = monthCount;
+		this.startMonth = startMonth;
+		this.startDay = startDay;
+		this.endDay = endDay;
+		this.index = index;
+		this.fence = fence;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super DatePair> action) {
+		while ((this.months == null) || (this.day > this.endDay)) {
+			if (!nextMonth()) {
+				return false;
+			}
+		}
+
+		int skip1 = this.months.getSkip1(this.rec);
+		int skip2 = this.months.getSkip2(this.rec);
+		int double1 = this.months.getDouble1(this.rec);
+		int double2 = this.months.getDouble2(this.rec);
+		int day = this.day;
+		int epochDay = this.months.getStartDay(this.rec)
+				+ this.months.getDayOffset(this.rec, day);
+
+		if (this.secondOfDouble) {
+			this.secondOfDouble = false;
+			this.day++;
+			action.accept(new DatePair(getTibDate(day, 2, false),
+					TibetanDateCalculation.toDate(epochDay + 1)));
+		} else if ((day == skip1) || (day == skip2)) {
+			this.day++;
+			action.accept(new DatePair(getTibDate(day, 0, true), null));
+		} else if ((day == double1) || (day == double2)) {
+			this.secondOfDouble = true;
+			action.accept(new DatePair(getTibDate(day, 1, false),
+					TibetanDateCalculation.toDate(epochDay)));
+		} else {
+			this.day++;
+			action.accept(new DatePair(getTibDate(day, 0, false),
+					TibetanDateCalculation.toDate(epochDay)));
+		}
+		return true;
+	}
+
+	/**
+	 * @return a day of the current month
+	 */
+	private TibDate getTibDate(int day, int doubleDayFlag,
+			boolean isSkippedDay) {
+		return TibDate.of(this.rab, this.yr, this.mn, this.monthFlag, day,
+				doubleDayFlag, isSkippedDay);
+	}
+
+	/**
+	 * start the next month of the query that exists in the Tibetan calendar
+	 *
+	 * @return false if there are no more months
+	 */
+	private boolean nextMonth() {
+		this.months = null;
+		while ((this.months == null) && (this.index < this.fence)) {
+			long i = this.index++;
+			this.monthFlag = (int) (i % 3);
+			i /= 3;
+			this.mn = this.startMonth + (int) (i % this.monthCount);
+			i /= this.monthCount;
+			this.yr = this.startYear + (int) (i % this.yearCount);
+			i /= this.yearCount;
+			this.rab = this.startRab + (int) i;
+
+			this.months = this.monthSegments.findSegment(this.rab, this.yr,
+					this.mn, this.monthFlag);
+		}
+		if (this.months == null) {
+			return false;
+		}
+
+		this.rec = this.months.findMonth(this.rab, this.yr, this.mn,
+				this.monthFlag);
+		this.day = this.startDay;
+		this.secondOfDouble = false;
+		return true;
+	}
+
+	@Override
+	public Spliterator<DatePair> trySplit() {
+		// hand over the first half of the months that have not been started
+		long remaining = this.fence - this.index;
+		if (remaining < 2) {
+			return null;
+		}
+		long mid = this.index + remaining / 2;
+		TibetanDateSpliterator prefix = new TibetanDateSpliterator(
+				this.monthSegments, this.startRab, this.yearCount,
+				this.startYear, this.monthCount, this.startMonth,
+				this.startDay, this.endDay, this.index, mid);
+		this.index = mid;
+
+		if (this.months != null) {
+			// the current month has to be finished before the months of the
+			// prefix, so it is handed over as well
+			prefix.months = this.months;
+			prefix.rec = this.rec;
+			prefix.rab = this.rab;
+			prefix.yr = this.yr;
+			prefix.mn = this.mn;
+			prefix.monthFlag = this.monthFlag;
+			prefix.day = this.day;
+			prefix.secondOfDouble = this.secondOfDouble;
+			this.months = null;
+		}
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+		// at most one more result per day for the doubled days; there are
+		// fewer results because only a third of the month flags exist
+		long days = this.endDay - this.startDay + 1;
+		return (this.fence - this.index) * days / 3
+				+ ((this.months != null) ? days : 0);
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL | IMMUTABLE;
+	}
+}
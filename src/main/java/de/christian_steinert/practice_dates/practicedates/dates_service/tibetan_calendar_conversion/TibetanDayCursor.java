@@ -0,0 +1,172 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+/**
+ * Walks through consecutive Gregorian days and provides the Tibetan date of
+ * each day.
+ *
+ * The month of the first day is looked up once; after that each step only
+ * reads the Tibetan day from the shape of the month (see
+ * {@link TibetanMonthShapes}) and moves to the next month of the table at the
+ * end of a month. No objects are created while walking, so a range of several
+ * years costs about as much as a single lookup plus one cheap step per day.
+ *
+ * A cursor keeps using the month tables that were current when it was
+ * created, even if they are replaced in the meantime. A cursor is not thread
+ * safe; each thread needs its own cursor.
+ */
+public final class TibetanDayCursor {
+	/** the month tables that are used to move from one rabjung to the next */
+	private final TibetanMonthSegments monthSegments;
+
+	/** the current day as number of days since 1970-01-01 */
+	private long epochDay;
+
+	/** table of the current month or null if the day is out of range */
+	private TibetanMonthTable months;
+
+	/** position of the current month in months */
+	private int rec;
+
+	/** epoch day of the first day of the current month */
+	private long monthStartDay;
+
+	/** epoch day of the first day after the current month */
+	private long monthEndDay;
+
+	/**
+	 * Constructor
+	 *
+	 * @param monthSegments
+	 *            the month tables to be used
+	 * @param epochDay
+	 *            the first day as number of days since 1970-01-01
+	 */
+	TibetanDayCursor(TibetanMonthSegments monthSegments, long epochDay) {
+		this.monthSegments = monthSegments;
+		moveTo(epochDay);
+	}
+
+	/**
+	 * @return the current Gregorian day as number of days since 1970-01-01
+	 */
+	public long getEpochDay() {
+		return this.epochDay;
+	}
+
+	/**
+	 * @return the Tibetan date of the current day packed as described in
+	 *         {@link PackedTibDate} or {@link PackedTibDate#NONE} if the day
+	 *         is out of range
+	 */
+	public long getPackedDate() {
+		if (this.months == null) {
+			return PackedTibDate.NONE;
+		}
+		int day = this.months.getDay(this.rec,
+				(int) (this.epochDay - this.monthStartDay));
+		return PackedTibDate.pack(this.months.getRabjung(this.rec),
+				this.months.getTibYear(this.rec),
+				this.months.getTibMonth(this.rec),
+				this.months.getMonthFlag(this.rec),
+				TibetanMonthShapes.getTibDay(day),
+				TibetanMonthShapes.getDoubleDayFlag(day), false);
+	}
+
+	/**
+	 * get the Tibetan day that is skipped between the current day and the
+	 * next day; this is either a day of the current month or the 1st day of
+	 * the next month
+	 *
+	 * @return the skipped day packed as described in {@link PackedTibDate}
+	 *         (with the skipped day flag set) or {@link PackedTibDate#NONE}
+	 *         if the next day directly follows the current day or the day is
+	 *         out of range
+	 */
+	public long getSkippedDate() {
+		if (this.months == null) {
+			return PackedTibDate.NONE;
+		}
+		int day = this.months.getDay(this.rec,
+				(int) (this.epochDay - this.monthStartDay));
+		if (TibetanMonthShapes.getDoubleDayFlag(day) == 1) {
+			// the next day is the second occurrence of the current day
+			return PackedTibDate.NONE;
+		}
+
+		int nextTibDay = TibetanMonthShapes.getTibDay(day) + 1;
+		if ((nextTibDay == this.months.getSkip1(this.rec))
+				|| (nextTibDay == this.months.getSkip2(this.rec))) {
+			return packSkippedDay(this.months, this.rec, nextTibDay);
+		}
+
+		if (this.epochDay + 1 == this.monthEndDay) {
+			// the last day of the month: the 1st day of the next month may be
+			// skipped, and the next month may be part of the table of the
+			// next rabjung
+			TibetanMonthTable nextMonths = this.months;
+			int nextRec = this.rec + 1;
+			if (nextRec >= nextMonths.size()) {
+				nextMonths = this.monthSegments.findSegment(this.monthEndDay);
+				if (nextMonths == null) {
+					return PackedTibDate.NONE;
+				}
+				nextRec = nextMonths.findMonth(this.monthEndDay);
+			}
+			if (nextMonths.getSkip1(nextRec) == 1) {
+				return packSkippedDay(nextMonths, nextRec, 1);
+			}
+		}
+		return PackedTibDate.NONE;
+	}
+
+	/**
+	 * pack a skipped day of a month
+	 */
+	private static long packSkippedDay(TibetanMonthTable months, int rec,
+			int tibDay) {
+		return PackedTibDate.pack(months.getRabjung(rec),
+				months.getTibYear(rec), months.getTibMonth(rec),
+				months.getMonthFlag(rec), tibDay, 0, true);
+	}
+
+	/**
+	 * move to the next Gregorian day
+	 */
+	public void next() {
+		this.epochDay++;
+		if (this.months == null) {
+			// out of range: the next day may be covered again
+			moveTo(this.epochDay);
+		} else if (this.epochDay < this.monthEndDay) {
+			// still the same month
+		} else if (this.rec + 1 < this.months.size()) {
+			setMonth(this.rec + 1);
+		} else {
+			// the next month is part of the table of the next rabjung
+			moveTo(this.epochDay);
+		}
+	}
+
+	/**
+	 * look up the month of a day and move to that day
+	 */
+	private void moveTo(long epochDay) {
+		this.epochDay = epochDay;
+		this.months = this.monthSegments.findSegment(epochDay);
+		if (this.months != null) {
+			setMonth(this.months.findMonth(epochDay));
+		}
+	}
+
+	/**
+	 * move to a month of the current table
+	 *
+	 * @param rec
+	 *            position of the month in the table
+	 */
+	private void setMonth(int rec) {
+		this.rec = rec;
+		this.monthStartDay = this.months.getStartDay(rec);
+		this.monthEndDay = this.months.getStartDay(rec + 1);
+	}
+}
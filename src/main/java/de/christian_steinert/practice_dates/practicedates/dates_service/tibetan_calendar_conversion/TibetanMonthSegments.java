@@ -0,0 +1,311 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The Tibetan months split into one month table per rabjung.
+ *
+ * The table of a rabjung is only calculated when it is needed for the first
+ * time; its neighbours are then calculated in the background because most
+ * queries are close to each other. Each table is published atomically, so
+ * all threads see either no table or a complete one.
+ *
+ * The tables of a range of frequently used rabjungs are kept once they have
+ * been calculated. All other rabjungs between MIN_RABJUNG and MAX_RABJUNG can
+ * be used as well, but only the last MAX_OTHER_SEGMENTS of them are kept, so
+ * the memory use does not depend on how far into the past or the future the
+ * queries go.
+ *
+ * The first day of each frequently used rabjung is calculated directly when
+ * this object is created, so that a Gregorian date can be assigned to its
+ * rabjung without calculating any table.
+ */
+final class TibetanMonthSegments {
+	/**
+	 * first rabjung that can be calculated; the limits keep all day and month
+	 * numbers within the range of int (about 1.8 million years)
+	 */
+	static final int MIN_RABJUNG = -30000;
+
+	/** last rabjung that can be calculated */
+	static final int MAX_RABJUNG = 30000;
+
+	/**
+	 * maximum number of tables that are kept for rabjungs outside of the
+	 * frequently used range
+	 */
+	private static final int MAX_OTHER_SEGMENTS = 8;
+
+	/**
+	 * mean number of days per rabjung (60 years with 67 months per 65 solar
+	 * months of 29.530587 days), used to estimate the rabjung of a day
+	 */
+	private static final double DAYS_PER_RABJUNG = 60 * 12 * 67 / 65.0 * 29.530587;
+
+	/** first frequently used rabjung */
+	private final int firstRabjung;
+
+	/** last frequently used rabjung */
+	private final int lastRabjung;
+
+	/**
+	 * skipped and doubled days that have been calculated in advance or null
+	 * if they need to be calculated for each table
+	 */
+	private final TibetanMonthTableData precalculated;
+
+	/** the calculation whose months are kept in the tables */
+	private final TibetanDateCalculation calculation;
+
+	/**
+	 * epoch day of the first day of each rabjung; the last entry is the first
+	 * day after the last rabjung
+	 */
+	private final int[] segmentStartDay;
+
+	/** epoch day of the first day of MIN_RABJUNG */
+	private final int minDay;
+
+	/** epoch day of the first day after MAX_RABJUNG */
+	private final int maxDay;
+
+	/**
+	 * month table of each frequently used rabjung or null if it has not been
+	 * calculated yet
+	 */
+	private final AtomicReferenceArray<TibetanMonthTable> segments;
+
+	/**
+	 * the most recently used month tables of the other rabjungs; access only
+	 * while synchronized on the map
+	 */
+	private final Map<Integer, TibetanMonthTable> otherSegments = new LinkedHashMap<Integer, TibetanMonthTable>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<Integer, TibetanMonthTable> eldest) {
+			return size() > MAX_OTHER_SEGMENTS;
+		}
+	};
+
+	/**
+	 * Constructor
+	 *
+	 * @param calculation
+	 *            the calculation of the months
+	 * @param firstRabjung
+	 *            first frequently used rabjung
+	 * @param lastRabjung
+	 *            last frequently used rabjung
+	 * @param precalculated
+	 *            skipped and doubled days that have been calculated in
+	 *            advance or null if there are none
+	 */
+	TibetanMonthSegments(TibetanDateCalculation calculation, int firstRabjung,
+			int lastRabjung, TibetanMonthTableData precalculated) {
+		this.calculation = calculation;
+		this.firstRabjung = firstRabjung;
+		this.lastRabjung = lastRabjung;
+		this.precalculated = precalculated;
+
+		int count = lastRabjung - firstRabjung + 1;
+		this.segmentStartDay = new int[count + 1];
+		for (int i = 0; i <= count; i++) {
+			this.segmentStartDay[i] = getMonthStartDay(calculation
+					.getFirstZladag(firstRabjung + i));
+		}
+		this.segments = new AtomicReferenceArray<>(count);
+		this.minDay = getSegmentStartDay(MIN_RABJUNG);
+		this.maxDay = getSegmentStartDay(MAX_RABJUNG + 1);
+	}
+
+	/**
+	 * get the month table of a rabjung and calculate it if necessary
+	 *
+	 * Note that the table of a rabjung starts with the 12th month of the last
+	 * year of the previous rabjung in some cases.
+	 *
+	 * @param rabjung
+	 *            the rabjung
+	 * @return the month table or null if the rabjung is not covered
+	 */
+	TibetanMonthTable getSegment(int rabjung) {
+		TibetanMonthTable segment = getOrCalculateSegment(rabjung);
+		if (segment != null) {
+			prefetchSegment(rabjung - 1);
+			prefetchSegment(rabjung + 1);
+		}
+		return segment;
+	}
+
+	/**
+	 * find the month table that contains a Gregorian date
+	 *
+	 * @param epochDay
+	 *            the Gregorian date as number of days since 1970-01-01
+	 * @return the month table or null if the date is not covered
+	 */
+	TibetanMonthTable findSegment(long epochDay) {
+		int count = this.segmentStartDay.length - 1;
+		if ((epochDay >= this.segmentStartDay[0])
+				&& (epochDay < this.segmentStartDay[count])) {
+			int i = Arrays.binarySearch(this.segmentStartDay, 0, count,
+					(int) epochDay);
+			if (i < 0) {
+				// not the first day of a rabjung: use the rabjung which
+				// started before that day
+				i = -i - 2;
+			}
+			return getSegment(this.firstRabjung + i);
+		}
+
+		if ((epochDay < this.minDay) || (epochDay >= this.maxDay)) {
+			return null;
+		}
+
+		synchronized (this.otherSegments) {
+			for (Map.Entry<Integer, TibetanMonthTable> entry : this.otherSegments
+					.entrySet()) {
+				TibetanMonthTable segment = entry.getValue();
+				if ((epochDay >= segment.getStartDay(0))
+						&& (epochDay < segment.getStartDay(segment.size()))) {
+					// get the table again to mark it as recently used
+					return this.otherSegments.get(entry.getKey());
+				}
+			}
+		}
+
+		// estimate the rabjung from the average length of a rabjung and
+		// correct the estimation with the exact start of the rabjungs
+		int rabjung = this.firstRabjung + (int) Math.floor(
+				(epochDay - this.segmentStartDay[0]) / DAYS_PER_RABJUNG);
+		rabjung = Math.max(MIN_RABJUNG, Math.min(MAX_RABJUNG, rabjung));
+		while (epochDay < getSegmentStartDay(rabjung)) {
+			rabjung--;
+		}
+		while (epochDay >= getSegmentStartDay(rabjung + 1)) {
+			rabjung++;
+		}
+		return getSegment(rabjung);
+	}
+
+	/**
+	 * @return the epoch day of the first day of a month, taken from the
+	 *         precalculated data if it covers the month
+	 */
+	private int getMonthStartDay(int zladag) {
+		if (this.precalculated != null) {
+			int i = zladag - this.precalculated.getFirstZladag();
+			if ((i >= 0) && (i <= this.precalculated.size())) {
+				return this.precalculated.getStartDay(i);
+			}
+		}
+		return this.calculation.getMonthStartDay(zladag);
+	}
+
+	/**
+	 * @return the epoch day of the first day of the table of a rabjung
+	 */
+	private int getSegmentStartDay(int rabjung) {
+		if ((rabjung >= this.firstRabjung)
+				&& (rabjung <= this.lastRabjung + 1)) {
+			return this.segmentStartDay[rabjung - this.firstRabjung];
+		}
+		return getMonthStartDay(this.calculation.getFirstZladag(rabjung));
+	}
+
+	/**
+	 * find the month table that contains a Tibetan month
+	 *
+	 * @return the month table or null if the month is not covered
+	 */
+	TibetanMonthTable findSegment(int rabjung, int tibYear, int tibMonth,
+			int monthFlag) {
+		TibetanMonthTable segment = getSegment(rabjung);
+		if ((segment != null)
+				&& (segment.findMonth(rabjung, tibYear, tibMonth,
+						monthFlag) != -1)) {
+			return segment;
+		}
+
+		// the last month of a rabjung may be part of the table of the next
+		// rabjung
+		if ((tibYear == 60) && (tibMonth == 12)) {
+			segment = getSegment(rabjung + 1);
+			if ((segment != null)
+					&& (segment.findMonth(rabjung, tibYear, tibMonth,
+							monthFlag) != -1)) {
+				return segment;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * get the month table of a rabjung and calculate it if necessary without
+	 * calculating its neighbours
+	 */
+	private TibetanMonthTable getOrCalculateSegment(int rabjung) {
+		if ((rabjung < MIN_RABJUNG) || (rabjung > MAX_RABJUNG)) {
+			return null;
+		}
+		if ((rabjung < this.firstRabjung) || (rabjung > this.lastRabjung)) {
+			return getOrCalculateOtherSegment(rabjung);
+		}
+
+		int i = rabjung - this.firstRabjung;
+		TibetanMonthTable segment = this.segments.get(i);
+		if (segment == null) {
+			// several threads may calculate the same table at the same time;
+			// they all use the table that was published first
+			segment = this.calculation.calculateMonthTable(rabjung,
+					rabjung, this.precalculated);
+			if (!this.segments.compareAndSet(i, null, segment)) {
+				segment = this.segments.get(i);
+			}
+		}
+		return segment;
+	}
+
+	/**
+	 * get the month table of a rabjung outside of the frequently used range
+	 * and calculate it if necessary
+	 */
+	private TibetanMonthTable getOrCalculateOtherSegment(int rabjung) {
+		TibetanMonthTable segment;
+		synchronized (this.otherSegments) {
+			segment = this.otherSegments.get(rabjung);
+		}
+		if (segment == null) {
+			// calculate the table outside of the lock so that other tables
+			// remain available in the meantime
+			segment = this.calculation.calculateMonthTable(rabjung,
+					rabjung, this.precalculated);
+			synchronized (this.otherSegments) {
+				TibetanMonthTable existing = this.otherSegments
+						.putIfAbsent(rabjung, segment);
+				if (existing != null) {
+					segment = existing;
+				}
+			}
+		}
+		return segment;
+	}
+
+	/**
+	 * calculate the month table of a frequently used rabjung in the
+	 * background unless it is already available
+	 */
+	private void prefetchSegment(int rabjung) {
+		if ((rabjung >= this.firstRabjung) && (rabjung <= this.lastRabjung)
+				&& (this.segments.get(rabjung - this.firstRabjung) == null)) {
+			CompletableFuture.runAsync(() -> getOrCalculateSegment(rabjung));
+		}
+	}
+}
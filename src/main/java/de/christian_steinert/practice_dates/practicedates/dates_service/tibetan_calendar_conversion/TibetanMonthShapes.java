@@ -0,0 +1,233 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionary of the shapes of Tibetan months.
+ *
+ * The shape of a month are its skipped and doubled days; together they
+ * decide which Tibetan day falls on each Gregorian day of the month. Only
+ * about 2000 different shapes occur in all rabjungs that can be calculated,
+ * so all month tables share one dictionary and each month only stores the
+ * number (id) of its shape. For each shape the dictionary holds the Tibetan
+ * day of each Gregorian day of the month and, in the other direction, the
+ * Gregorian day of each Tibetan day, so that both conversions of a day of a
+ * month are a single array read.
+ *
+ * Shapes are only added, never removed. Each addition publishes a new
+ * dictionary object that shares the arrays with the previous one; a month
+ * table keeps the dictionary that contains all shapes of its months and can
+ * read it without any synchronization.
+ *
+ * The days are encoded as (tibDay << 2) | doubleDayFlag so that they fit into
+ * a single (unsigned) byte; 0 is the day before the first day of the month.
+ */
+final class TibetanMonthShapes {
+	/**
+	 * number of Gregorian days per month that are stored for each shape; the
+	 * months have 29 or 30 days, and even 30 days plus two doubled days would
+	 * fit
+	 */
+	static final int MAX_DAYS = 32;
+
+	/** number of bits of MAX_DAYS */
+	private static final int MAX_DAYS_BITS = 5;
+
+	/** largest number of shapes, limited by the ids being stored as char */
+	private static final int MAX_SHAPES = Character.MAX_VALUE + 1;
+
+	/** id of each shape by its packed skipped and doubled days */
+	private static final Map<Integer, Character> ids = new HashMap<>();
+
+	/** the dictionary with all shapes that have been added so far */
+	private static volatile TibetanMonthShapes current = new TibetanMonthShapes(
+			0, new int[64], new byte[64 * MAX_DAYS], new byte[64 * MAX_DAYS]);
+
+	/** number of shapes in this dictionary */
+	private final int size;
+
+	/** packed skipped and doubled days of each shape */
+	private final int[] packed;
+
+	/** encoded day of each Gregorian day (MAX_DAYS per shape) */
+	private final byte[] days;
+
+	/**
+	 * offset of the Gregorian day of each Tibetan day (MAX_DAYS per shape,
+	 * indexed by the Tibetan day)
+	 */
+	private final byte[] offsets;
+
+	private TibetanMonthShapes(int size, int[] packed, byte[] days,
+			byte[] offsets) {
+		this.size = size;
+		this.packed = packed;
+		this.days = days;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * get the id of a shape; the shape is added to the dictionary if it is
+	 * not part of it yet
+	 *
+	 * @param packedSkippedAndDoubled
+	 *            the skipped and doubled days of a month packed as in
+	 *            TibetanMonthTable
+	 * @return the id of the shape
+	 */
+	static synchronized char getId(int packedSkippedAndDoubled) {
+		Character id = ids.get(packedSkippedAndDoubled);
+		if (id != null) {
+			return id;
+		}
+
+		TibetanMonthShapes shapes = current;
+		int newId = shapes.size;
+		if (newId == MAX_SHAPES) {
+			throw new IllegalStateException("Too many month shapes");
+		}
+
+		int[] packed = shapes.packed;
+		byte[] days = shapes.days;
+		byte[] offsets = shapes.offsets;
+		if (newId == packed.length) {
+			// the new arrays are only visible to the new dictionary; older
+			// dictionaries keep reading the previous ones
+			packed = Arrays.copyOf(packed, packed.length * 2);
+			days = Arrays.copyOf(days, days.length * 2);
+			offsets = Arrays.copyOf(offsets, offsets.length * 2);
+		}
+
+		int skip1 = packedSkippedAndDoubled & TibetanMonthTable.DAY_MASK;
+		int skip2 = (packedSkippedAndDoubled >>> TibetanMonthTable.DAY_BITS)
+				& TibetanMonthTable.DAY_MASK;
+		int double1 = (packedSkippedAndDoubled >>> (2 * TibetanMonthTable.DAY_BITS))
+				& TibetanMonthTable.DAY_MASK;
+		int double2 = (packedSkippedAndDoubled >>> (3 * TibetanMonthTable.DAY_BITS))
+				& TibetanMonthTable.DAY_MASK;
+
+		packed[newId] = packedSkippedAndDoubled;
+		int day = 0;
+		for (int offset = 0; offset < MAX_DAYS; offset++) {
+			day = nextDay(day, skip1, skip2, double1, double2);
+			days[(newId << MAX_DAYS_BITS) + offset] = (byte) day;
+		}
+		for (int tibDay = 0; tibDay < MAX_DAYS; tibDay++) {
+			offsets[(newId << MAX_DAYS_BITS) + tibDay] = (byte) getOffset(
+					tibDay, skip1, skip2, double1, double2);
+		}
+
+		ids.put(packedSkippedAndDoubled, (char) newId);
+		current = new TibetanMonthShapes(newId + 1, packed, days, offsets);
+		return (char) newId;
+	}
+
+	/**
+	 * @return the dictionary with all shapes that have been added so far
+	 */
+	static TibetanMonthShapes getCurrent() {
+		return current;
+	}
+
+	/**
+	 * @return the packed skipped and doubled days of a shape
+	 */
+	int getPackedSkippedAndDoubled(int id) {
+		return this.packed[id];
+	}
+
+	/**
+	 * get the Tibetan day of a Gregorian day of a month
+	 *
+	 * @param id
+	 *            the shape of the month
+	 * @param offset
+	 *            number of days since the first day of the month
+	 *            (0..MAX_DAYS-1)
+	 * @return the encoded Tibetan day
+	 */
+	int getDay(int id, int offset) {
+		return this.days[(id << MAX_DAYS_BITS) + offset] & 0xFF;
+	}
+
+	/**
+	 * get the Gregorian day of a Tibetan day of a month
+	 *
+	 * @param id
+	 *            the shape of the month
+	 * @param tibDay
+	 *            the day within the month (1..30)
+	 * @return the number of days since the first day of the month; for a
+	 *         doubled day the offset of its first occurrence, for a skipped
+	 *         day the offset of the following day
+	 */
+	int getOffset(int id, int tibDay) {
+		return this.offsets[(id << MAX_DAYS_BITS) + tibDay];
+	}
+
+	/**
+	 * calculate the Gregorian day of a Tibetan day of a month
+	 *
+	 * @return the offset as described for getOffset(int, int)
+	 */
+	private static int getOffset(int tibDay, int skip1, int skip2,
+			int double1, int double2) {
+		int dayDiff = tibDay - 1;
+		if ((tibDay > skip1) && (skip1 != 0)) {
+			dayDiff--;
+		}
+		if ((tibDay > skip2) && (skip2 != 0)) {
+			dayDiff--;
+		}
+		if ((tibDay > double1) && (double1 != 0)) {
+			dayDiff++;
+		}
+		if ((tibDay > double2) && (double2 != 0)) {
+			dayDiff++;
+		}
+		return dayDiff;
+	}
+
+	/**
+	 * get the Tibetan day that follows a Tibetan day of the same month
+	 *
+	 * @param day
+	 *            the encoded day
+	 * @param skip1
+	 *            first skipped day of the month or 0
+	 * @param skip2
+	 *            second skipped day of the month or 0
+	 * @param double1
+	 *            first doubled day of the month or 0
+	 * @param double2
+	 *            second doubled day of the month or 0
+	 * @return the encoded following day
+	 */
+	static int nextDay(int day, int skip1, int skip2, int double1,
+			int double2) {
+		if (getDoubleDayFlag(day) == 1) {
+			// the second occurrence of a doubled day
+			return (day & ~3) | 2;
+		}
+
+		int tibDay = getTibDay(day) + 1;
+		while ((tibDay == skip1) || (tibDay == skip2)) {
+			tibDay++;
+		}
+		int doubleDayFlag = ((tibDay == double1) || (tibDay == double2)) ? 1
+				: 0;
+		return (tibDay << 2) | doubleDayFlag;
+	}
+
+	/** @return the day within the month of an encoded day */
+	static int getTibDay(int day) {
+		return day >>> 2;
+	}
+
+	/** @return the double day flag of an encoded day */
+	static int getDoubleDayFlag(int day) {
+		return day & 3;
+	}
+}
@@ -0,0 +1,406 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import java.util.Arrays;
+
+/**
+ * Read-only table with the most important characteristics of a contiguous
+ * sequence of Tibetan months.
+ *
+ * The information is stored column by column in primitive arrays. The
+ * positions of skipped and doubled days are packed into a single int per
+ * month with 5 bits per position (skip1, skip2, double1, double2 from the
+ * lowest bits upwards). The table itself only stores the id of this shape of
+ * each month in {@link TibetanMonthShapes}.
+ */
+public final class TibetanMonthTable implements TibetanMonthTableData {
+	/** number of bits per packed skipped or doubled day */
+	static final int DAY_BITS = 5;
+
+	/** mask for one packed skipped or doubled day */
+	static final int DAY_MASK = (1 << DAY_BITS) - 1;
+
+	/** global month number (zladag) of the first month in this table */
+	private final int firstZladag;
+
+	/** number of the 60-year cycle of each month */
+	private final int[] rabjung;
+
+	/** number of the year within the 60-year cycle (1..60) of each month */
+	private final byte[] tibYear;
+
+	/** number of each month (1..12) */
+	private final byte[] tibMonth;
+
+	/**
+	 * type of each month - 0: normal month; 1: first month of a double month;
+	 * 2: second month of a double month
+	 */
+	private final byte[] monthFlag;
+
+	/** id of the shape (the skipped and doubled days) of each month */
+	private final char[] shapeId;
+
+	/** dictionary that contains the shapes of all months of this table */
+	private final TibetanMonthShapes shapes;
+
+	/**
+	 * epoch day of the first day of each month; the last entry is the first
+	 * day after the last month of the table
+	 */
+	private final int[] startDay;
+
+	/**
+	 * position of each month in this table, directly addressed by rabjung,
+	 * year, month and month flag (see getMonthKey) or -1 for months that are
+	 * not part of this table
+	 */
+	private final int[] monthIndex;
+
+	/** rabjung that corresponds to the first entry of monthIndex */
+	private final int firstIndexedRabjung;
+
+	private TibetanMonthTable(Builder builder, int endDay) {
+		int size = builder.size;
+		this.firstZladag = builder.firstZladag;
+		this.rabjung = Arrays.copyOf(builder.rabjung, size);
+		this.tibYear = Arrays.copyOf(builder.tibYear, size);
+		this.tibMonth = Arrays.copyOf(builder.tibMonth, size);
+		this.monthFlag = Arrays.copyOf(builder.monthFlag, size);
+		this.shapeId = new char[size];
+		for (int i = 0; i < size; i++) {
+			this.shapeId[i] = TibetanMonthShapes.getId(builder.skipDouble[i]);
+		}
+		this.shapes = TibetanMonthShapes.getCurrent();
+		this.startDay = Arrays.copyOf(builder.startDay, size + 1);
+		this.startDay[size] = endDay;
+
+		int minRabjung = Integer.MAX_VALUE;
+		int maxRabjung = Integer.MIN_VALUE;
+		for (int i = 0; i < size; i++) {
+			minRabjung = Math.min(minRabjung, this.rabjung[i]);
+			maxRabjung = Math.max(maxRabjung, this.rabjung[i]);
+		}
+		this.firstIndexedRabjung = minRabjung;
+		this.monthIndex = new int[size == 0 ? 0
+				: (maxRabjung - minRabjung + 1) * 60 * 12 * 3];
+		Arrays.fill(this.monthIndex, -1);
+		for (int i = 0; i < size; i++) {
+			this.monthIndex[getMonthKey(this.rabjung[i], this.tibYear[i],
+					this.tibMonth[i], this.monthFlag[i])] = i;
+		}
+	}
+
+	/** @return the number of months in this table */
+	@Override
+	public int size() {
+		return this.rabjung.length;
+	}
+
+	@Override
+	public int getFirstZladag() {
+		return this.firstZladag;
+	}
+
+	/** @return the global month number (zladag) of the month at position i */
+	public int getZladag(int i) {
+		return this.firstZladag + i;
+	}
+
+	/** @return the rabjung of the month at position i */
+	public int getRabjung(int i) {
+		return this.rabjung[i];
+	}
+
+	/** @return the year within the rabjung of the month at position i */
+	public int getTibYear(int i) {
+		return this.tibYear[i];
+	}
+
+	/** @return the number (1..12) of the month at position i */
+	public int getTibMonth(int i) {
+		return this.tibMonth[i];
+	}
+
+	/**
+	 * @return the type of the month at position i - 0: normal month; 1: first
+	 *         month of a double month; 2: second month of a double month
+	 */
+	public int getMonthFlag(int i) {
+		return this.monthFlag[i];
+	}
+
+	/**
+	 * @return the first skipped day of the month at position i or 0 if no day
+	 *         is skipped
+	 */
+	public int getSkip1(int i) {
+		return getPackedSkippedAndDoubled(i) & DAY_MASK;
+	}
+
+	/**
+	 * @return the second skipped day of the month at position i or 0 if no
+	 *         2nd day is skipped
+	 */
+	public int getSkip2(int i) {
+		return (getPackedSkippedAndDoubled(i) >>> DAY_BITS) & DAY_MASK;
+	}
+
+	/**
+	 * @return the first doubled day of the month at position i or 0 if no day
+	 *         is doubled
+	 */
+	public int getDouble1(int i) {
+		return (getPackedSkippedAndDoubled(i) >>> (2 * DAY_BITS)) & DAY_MASK;
+	}
+
+	/**
+	 * @return the second doubled day of the month at position i or 0 if no
+	 *         2nd day is doubled
+	 */
+	public int getDouble2(int i) {
+		return (getPackedSkippedAndDoubled(i) >>> (3 * DAY_BITS)) & DAY_MASK;
+	}
+
+	/**
+	 * @return the skipped and doubled days of the month at position i in
+	 *         their packed form
+	 */
+	@Override
+	public int getPackedSkippedAndDoubled(int i) {
+		return this.shapes.getPackedSkippedAndDoubled(this.shapeId[i]);
+	}
+
+	/**
+	 * get the Tibetan day of a Gregorian day of the month at position i
+	 *
+	 * @param i
+	 *            position of the month
+	 * @param offset
+	 *            number of days since the first day of the month
+	 *            (0..getMonthLength(i)-1)
+	 * @return the Tibetan day encoded as described in TibetanMonthShapes
+	 */
+	int getDay(int i, int offset) {
+		return this.shapes.getDay(this.shapeId[i], offset);
+	}
+
+	/**
+	 * @return the epoch day of the first day of the month at position i; for
+	 *         i == size() the first day after the last month of the table
+	 */
+	@Override
+	public int getStartDay(int i) {
+		return this.startDay[i];
+	}
+
+	/** @return the number of days of the month at position i */
+	public int getMonthLength(int i) {
+		return this.startDay[i + 1] - this.startDay[i];
+	}
+
+	/**
+	 * get the number of Gregorian days between the first day of the month at
+	 * position i and a day of that month
+	 *
+	 * @param i
+	 *            position of the month
+	 * @param day
+	 *            the day within the month (1..30)
+	 * @return the offset of the day; for a doubled day the offset of its
+	 *         first occurrence
+	 */
+	public int getDayOffset(int i, int day) {
+		return this.shapes.getOffset(this.shapeId[i], day);
+	}
+
+	/**
+	 * find the month that contains a Gregorian date
+	 *
+	 * @param epochDay
+	 *            the Gregorian date as number of days since 1970-01-01
+	 * @return the position of the month or -1 if the date is not covered by
+	 *         this table
+	 */
+	public int findMonth(long epochDay) {
+		int size = size();
+		if (size == 0 || epochDay < this.startDay[0]
+				|| epochDay >= this.startDay[size]) {
+			return -1;
+		}
+
+		int i = Arrays.binarySearch(this.startDay, 0, size, (int) epochDay);
+		if (i < 0) {
+			// not a month start: use the month which started before that day
+			i = -i - 2;
+		}
+		return i;
+	}
+
+	/**
+	 * find a Tibetan month
+	 *
+	 * @param rabjung
+	 *            rabjung of the month
+	 * @param tibYear
+	 *            year of the month
+	 * @param tibMonth
+	 *            number of the month
+	 * @param monthFlag
+	 *            0: normal month; 1: first month of a double month; 2: second
+	 *            month of a double month
+	 * @return the position of the month or -1 if no month matches the given
+	 *         information
+	 */
+	public int findMonth(int rabjung, int tibYear, int tibMonth, int monthFlag) {
+		if ((tibYear < 1) || (tibYear > 60) || (tibMonth < 1)
+				|| (tibMonth > 12) || (monthFlag < 0) || (monthFlag > 2)) {
+			return -1;
+		}
+
+		int key = getMonthKey(rabjung, tibYear, tibMonth, monthFlag);
+		if ((key < 0) || (key >= this.monthIndex.length)) {
+			return -1;
+		}
+		return this.monthIndex[key];
+	}
+
+	/**
+	 * get the position of a Tibetan month in monthIndex
+	 */
+	private int getMonthKey(int rabjung, int tibYear, int tibMonth,
+			int monthFlag) {
+		long yearKey = (rabjung - (long) this.firstIndexedRabjung) * 60
+				+ (tibYear - 1);
+		long key = ((yearKey * 12) + (tibMonth - 1)) * 3 + monthFlag;
+		return (key < 0 || key > Integer.MAX_VALUE) ? -1 : (int) key;
+	}
+
+	/**
+	 * Collects the information of the months for a new table while they are
+	 * calculated
+	 */
+	static final class Builder {
+		private int firstZladag;
+		private int size;
+		private int[] rabjung = new int[256];
+		private byte[] tibYear = new byte[256];
+		private byte[] tibMonth = new byte[256];
+		private byte[] monthFlag = new byte[256];
+		private int[] skipDouble = new int[256];
+		private int[] startDay = new int[257];
+
+		/**
+		 * Constructor
+		 *
+		 * @param firstZladag
+		 *            global month number (zladag) of the first month
+		 */
+		Builder(int firstZladag) {
+			this.firstZladag = firstZladag;
+		}
+
+		/** @return the number of months that have been added so far */
+		int size() {
+			return this.size;
+		}
+
+		/** @return the global month number of the month at position i */
+		int getZladag(int i) {
+			return this.firstZladag + i;
+		}
+
+		/**
+		 * add a month to the end of the table
+		 *
+		 * @return the position of the new month
+		 */
+		int addMonth(int rabjung, int tibYear, int tibMonth, int monthFlag) {
+			if (this.size == this.rabjung.length) {
+				int capacity = this.size * 2;
+				this.rabjung = Arrays.copyOf(this.rabjung, capacity);
+				this.tibYear = Arrays.copyOf(this.tibYear, capacity);
+				this.tibMonth = Arrays.copyOf(this.tibMonth, capacity);
+				this.monthFlag = Arrays.copyOf(this.monthFlag, capacity);
+				this.skipDouble = Arrays.copyOf(this.skipDouble, capacity);
+				this.startDay = Arrays.copyOf(this.startDay, capacity + 1);
+			}
+
+			int i = this.size++;
+			this.rabjung[i] = rabjung;
+			this.tibYear[i] = (byte) tibYear;
+			this.tibMonth[i] = (byte) tibMonth;
+			this.monthFlag[i] = (byte) monthFlag;
+			return i;
+		}
+
+		/**
+		 * find the position of a month that has been added before
+		 *
+		 * @return the position of the month or -1 if no month matches
+		 */
+		int indexOf(int rabjung, int tibYear, int tibMonth, int monthFlag) {
+			for (int i = this.size - 1; i >= 0; i--) {
+				if ((this.rabjung[i] == rabjung)
+						&& (this.tibYear[i] == tibYear)
+						&& (this.tibMonth[i] == tibMonth)
+						&& (this.monthFlag[i] == monthFlag)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/** set the skipped and doubled days of the month at position i */
+		void setSkippedAndDoubled(int i, int skip1, int skip2, int double1,
+				int double2) {
+			this.skipDouble[i] = skip1 | (skip2 << DAY_BITS)
+					| (double1 << (2 * DAY_BITS))
+					| (double2 << (3 * DAY_BITS));
+		}
+
+		/**
+		 * set the skipped and doubled days of the month at position i in
+		 * their packed form
+		 */
+		void setPackedSkippedAndDoubled(int i, int packed) {
+			this.skipDouble[i] = packed;
+		}
+
+		/**
+		 * @return the number of days of the month at position i as defined by
+		 *         its skipped and doubled days
+		 */
+		int getMonthLength(int i) {
+			int packed = this.skipDouble[i];
+			int length = 30;
+			for (int pos = 0; pos < 4; pos++) {
+				if (((packed >>> (pos * DAY_BITS)) & DAY_MASK) != 0) {
+					// the first two positions are skipped days, the last two
+					// positions are doubled days
+					length += (pos < 2) ? -1 : 1;
+				}
+			}
+			return length;
+		}
+
+		/** set the epoch day of the first day of the month at position i */
+		void setStartDay(int i, int epochDay) {
+			this.startDay[i] = epochDay;
+		}
+
+		/** @return the epoch day of the first day of the month at position i */
+		int getStartDay(int i) {
+			return this.startDay[i];
+		}
+
+		/**
+		 * create the read-only table
+		 *
+		 * @param endDay
+		 *            the first day after the last month of the table
+		 */
+		TibetanMonthTable build(int endDay) {
+			return new TibetanMonthTable(this, endDay);
+		}
+	}
+}
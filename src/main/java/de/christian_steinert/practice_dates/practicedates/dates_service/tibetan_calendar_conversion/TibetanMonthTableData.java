@@ -0,0 +1,33 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+/**
+ * Month table data that has been calculated in advance, e.g. during the build
+ * by {@link TibetanMonthTableGenerator}.
+ *
+ * The skipped and doubled days and the first day of each month are provided
+ * because they are expensive to calculate; the labels of the months (rabjung,
+ * year, month, month flag) follow from the month number with a few integer
+ * operations and are derived when a table is created.
+ *
+ * The data is accessed month by month, so that implementations can keep it
+ * in any form, e.g. in a memory-mapped file.
+ */
+public interface TibetanMonthTableData {
+	/** @return the global month number (zladag) of the first month */
+	int getFirstZladag();
+
+	/** @return the number of months */
+	int size();
+
+	/**
+	 * @return the skipped and doubled days of the month at position i, packed
+	 *         as in {@link TibetanMonthTable}
+	 */
+	int getPackedSkippedAndDoubled(int i);
+
+	/**
+	 * @return the epoch day of the first day of the month at position i; for
+	 *         i == size() the first day after the last month
+	 */
+	int getStartDay(int i);
+}
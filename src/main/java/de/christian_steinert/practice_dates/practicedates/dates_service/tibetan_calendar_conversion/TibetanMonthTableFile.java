@@ -0,0 +1,207 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the skipped and doubled days of the Tibetan months as a
+ * compact binary file, so that several processes can share one precalculated
+ * file instead of calculating the skipped and doubled days each on their own.
+ *
+ * The skipped and doubled days and the first day of each month are stored
+ * because they are the parts of the month tables that are expensive to
+ * calculate. The labels of the months are derived from the month number when
+ * the table of a rabjung is needed, just as with the data that is generated
+ * during the build (see TibetanMonthTableData).
+ *
+ * The file stays mapped into memory and the months are read from the mapping
+ * when a table is created, so processes that use the same file share its
+ * pages. The file is written by {@link TibetanMonthTableGenerator}.
+ *
+ * File layout (little endian):
+ *
+ * <pre>
+ * header:  magic "TIBM", version, firstZladag, month count n, CRC32 of the body
+ * body:    int skipDouble[n], int startDay[n + 1]
+ * </pre>
+ */
+public final class TibetanMonthTableFile {
+	/** identifies month table files */
+	private static final int MAGIC = 0x4d424954; // "TIBM"
+
+	/** version of the file layout; must be increased on every change */
+	static final int VERSION = 3;
+
+	/** size of the file header in bytes */
+	private static final int HEADER_SIZE = 5 * Integer.BYTES;
+
+	private TibetanMonthTableFile() {
+	}
+
+	/**
+	 * write the skipped and doubled days and the first days of a sequence of
+	 * months to a file
+	 *
+	 * The file is written to a temporary file first and then moved to its
+	 * final name, so that other processes never see a partially written file.
+	 *
+	 * @param months
+	 *            the months to be written
+	 * @param file
+	 *            the file to be written
+	 */
+	public static void write(TibetanMonthTableData months, Path file)
+			throws IOException {
+		int size = months.size();
+		ByteBuffer body = ByteBuffer.allocate((int) getBodySize(size))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		IntBuffer columns = body.asIntBuffer();
+		for (int i = 0; i < size; i++) {
+			columns.put(months.getPackedSkippedAndDoubled(i));
+		}
+		for (int i = 0; i <= size; i++) {
+			columns.put(months.getStartDay(i));
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(months.getFirstZladag());
+		header.putInt(size);
+		header.putInt((int) checksum(body));
+		header.flip();
+
+		Path dir = file.toAbsolutePath().getParent();
+		Files.createDirectories(dir);
+		Path tmpFile = Files.createTempFile(dir, file.getFileName().toString(),
+				".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(tmpFile,
+					StandardOpenOption.WRITE)) {
+				while (header.hasRemaining() || body.hasRemaining()) {
+					channel.write(new ByteBuffer[] { header, body });
+				}
+			}
+			Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+	}
+
+	/**
+	 * map a file with the skipped and doubled days and the first days of the
+	 * months into memory
+	 *
+	 * @param file
+	 *            the file to be read
+	 * @return the months, backed by the mapped file
+	 * @throws IOException
+	 *             if the file cannot be read, has an unknown format or
+	 *             version or does not match its checksum
+	 */
+	public static TibetanMonthTableData read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			long fileSize = channel.size();
+			if (fileSize < HEADER_SIZE) {
+				throw new IOException(file + " is not a month table file");
+			}
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, fileSize);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException(file + " is not a month table file");
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException(file + " has the unsupported version "
+						+ version);
+			}
+			int firstZladag = buffer.getInt();
+			int size = buffer.getInt();
+			int expectedChecksum = buffer.getInt();
+			if ((size < 1) || (fileSize != HEADER_SIZE + getBodySize(size))) {
+				throw new IOException(file + " has an unexpected size");
+			}
+			if ((int) checksum(buffer.slice()) != expectedChecksum) {
+				throw new IOException(file + " does not match its checksum");
+			}
+
+			// the columns are views of the mapping, which stays valid after
+			// the channel has been closed
+			IntBuffer columns = buffer.slice().order(ByteOrder.LITTLE_ENDIAN)
+					.asIntBuffer();
+			return new MappedMonthTableData(firstZladag, size, columns);
+		}
+	}
+
+	/**
+	 * @return the size of the file body in bytes for a table with the given
+	 *         number of months
+	 */
+	private static long getBodySize(int size) {
+		return (2L * size + 1) * Integer.BYTES;
+	}
+
+	/**
+	 * calculate a CRC32 checksum over the remaining bytes of a buffer without
+	 * changing its position
+	 */
+	private static long checksum(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate());
+		return crc.getValue();
+	}
+
+	/**
+	 * The months of a mapped file; the columns are read with absolute gets,
+	 * so the data can be used by several threads at once
+	 */
+	private static final class MappedMonthTableData implements
+			TibetanMonthTableData {
+		private final int firstZladag;
+
+		private final int size;
+
+		/** skipDouble[size] followed by startDay[size + 1] */
+		private final IntBuffer columns;
+
+		MappedMonthTableData(int firstZladag, int size, IntBuffer columns) {
+			this.firstZladag = firstZladag;
+			this.size = size;
+			this.columns = columns;
+		}
+
+		@Override
+		public int getFirstZladag() {
+			return this.firstZladag;
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		@Override
+		public int getPackedSkippedAndDoubled(int i) {
+			return this.columns.get(i);
+		}
+
+		@Override
+		public int getStartDay(int i) {
+			return this.columns.get(this.size + i);
+		}
+	}
+}
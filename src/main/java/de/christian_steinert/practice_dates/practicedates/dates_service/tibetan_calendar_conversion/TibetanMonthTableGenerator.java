@@ -0,0 +1,220 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Generates the Java class GeneratedTibetanMonthTableData which contains the
+ * skipped and doubled days and the first day of all Tibetan months as
+ * constant data. This is run during the maven build (see pom.xml) so that the
+ * application does not need to calculate them at runtime. Optionally the same
+ * data is written to a month table file (see {@link TibetanMonthTableFile}).
+ *
+ * The data of each month is encoded as five characters (skip1, skip2,
+ * double1, double2, number of days of the month), each as the character '0'
+ * plus the number.
+ */
+public final class TibetanMonthTableGenerator {
+	/** fully qualified name of the generated class */
+	public static final String GENERATED_CLASS_NAME = "de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion.GeneratedTibetanMonthTableData";
+
+	/** number of characters per encoded month */
+	private static final int CHARS_PER_MONTH = 5;
+
+	/** number of encoded skipped and doubled days per month */
+	private static final int DAYS_PER_MONTH = 4;
+
+	/** number of months per string constant in the generated class */
+	private static final int MONTHS_PER_CHUNK = 2048;
+
+	private TibetanMonthTableGenerator() {
+	}
+
+	/**
+	 * Generate the source code of the class with the precalculated data
+	 *
+	 * @param args
+	 *            the root directory for the generated source code and
+	 *            optionally the name of a month table file to be written
+	 * @throws IllegalArgumentException
+	 *             if the arguments are missing
+	 */
+	public static void main(String[] args) throws IOException {
+		if ((args.length < 1) || (args.length > 2)) {
+			throw new IllegalArgumentException("Usage: TibetanMonthTableGenerator <output directory> [<month table file>]");
+		}
+
+		// always calculate the data even if a generated class from an earlier
+		// build is available on the class path
+		TibetanMonthTable months = new TibetanDateCalculation()
+				.calculateMonthTable(false);
+
+		int[] skipDouble = new int[months.size()];
+		for (int i = 0; i < skipDouble.length; i++) {
+			skipDouble[i] = months.getPackedSkippedAndDoubled(i);
+		}
+		int[] startDay = new int[months.size() + 1];
+		for (int i = 0; i < startDay.length; i++) {
+			startDay[i] = months.getStartDay(i);
+		}
+		String[] chunks = encode(skipDouble, startDay);
+		long checksum = checksum(skipDouble, startDay);
+
+		// make sure that the generated data can be read back correctly
+		int[][] decoded = decode(chunks, startDay[0], checksum);
+		if (!Arrays.equals(skipDouble, decoded[0])
+				|| !Arrays.equals(startDay, decoded[1])) {
+			throw new IllegalStateException("Encoding of the month table failed");
+		}
+
+		int nameStart = GENERATED_CLASS_NAME.lastIndexOf('.');
+		String packageName = GENERATED_CLASS_NAME.substring(0, nameStart);
+		String className = GENERATED_CLASS_NAME.substring(nameStart + 1);
+		Path dir = Paths.get(args[0], packageName.split("\\."));
+		Files.createDirectories(dir);
+		Path file = dir.resolve(className + ".java");
+
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+			out.write("package " + packageName + ";\n\n");
+			out.write("/**\n");
+			out.write(" * Skipped and doubled days and first days of all Tibetan months.\n");
+			out.write(" * \n");
+			out.write(" * GENERATED by TibetanMonthTableGenerator during the build - do not edit.\n");
+			out.write(" */\n");
+			out.write("public final class " + className
+					+ " implements TibetanMonthTableData {\n");
+			out.write("\tprivate static final int FIRST_ZLADAG = "
+					+ months.getZladag(0) + ";\n\n");
+			out.write("\tprivate static final int FIRST_START_DAY = "
+					+ startDay[0] + ";\n\n");
+			out.write("\tprivate static final long CHECKSUM = " + checksum + "L;\n\n");
+			out.write("\tprivate static final String[] MONTH_CHUNKS = {\n");
+			for (String chunk : chunks) {
+				out.write("\t\t\t\"" + chunk + "\",\n");
+			}
+			out.write("\t};\n\n");
+			out.write("\tprivate static final int[][] COLUMNS = TibetanMonthTableGenerator\n");
+			out.write("\t\t\t.decode(MONTH_CHUNKS, FIRST_START_DAY, CHECKSUM);\n\n");
+			out.write("\tprivate static final int[] SKIP_DOUBLE = COLUMNS[0];\n\n");
+			out.write("\tprivate static final int[] START_DAY = COLUMNS[1];\n\n");
+			out.write("\t@Override\n");
+			out.write("\tpublic int getFirstZladag() {\n");
+			out.write("\t\treturn FIRST_ZLADAG;\n");
+			out.write("\t}\n\n");
+			out.write("\t@Override\n");
+			out.write("\tpublic int size() {\n");
+			out.write("\t\treturn SKIP_DOUBLE.length;\n");
+			out.write("\t}\n\n");
+			out.write("\t@Override\n");
+			out.write("\tpublic int getPackedSkippedAndDoubled(int i) {\n");
+			out.write("\t\treturn SKIP_DOUBLE[i];\n");
+			out.write("\t}\n\n");
+			out.write("\t@Override\n");
+			out.write("\tpublic int getStartDay(int i) {\n");
+			out.write("\t\treturn START_DAY[i];\n");
+			out.write("\t}\n");
+			out.write("}\n");
+		}
+
+		if (args.length > 1) {
+			TibetanMonthTableFile.write(months, Paths.get(args[1]));
+		}
+	}
+
+	/**
+	 * encode the packed skipped and doubled days and the lengths of all
+	 * months as strings
+	 *
+	 * @param skipDouble
+	 *            the packed skipped and doubled days of each month
+	 * @param startDay
+	 *            the first day of each month and the first day after the last
+	 *            month
+	 */
+	static String[] encode(int[] skipDouble, int[] startDay) {
+		int chunkCount = (skipDouble.length + MONTHS_PER_CHUNK - 1)
+				/ MONTHS_PER_CHUNK;
+		String[] chunks = new String[chunkCount];
+
+		for (int chunk = 0; chunk < chunkCount; chunk++) {
+			int from = chunk * MONTHS_PER_CHUNK;
+			int to = Math.min(from + MONTHS_PER_CHUNK, skipDouble.length);
+			StringBuilder result = new StringBuilder((to - from) * CHARS_PER_MONTH);
+			for (int i = from; i < to; i++) {
+				for (int pos = 0; pos < DAYS_PER_MONTH; pos++) {
+					result.append((char) ('0' + ((skipDouble[i] >>> (pos * 5)) & 0x1f)));
+				}
+				result.append((char) ('0' + (startDay[i + 1] - startDay[i])));
+			}
+			chunks[chunk] = result.toString();
+		}
+		return chunks;
+	}
+
+	/**
+	 * decode the strings with the skipped and doubled days and the lengths of
+	 * all months
+	 *
+	 * @param chunks
+	 *            the encoded data
+	 * @param firstStartDay
+	 *            the epoch day of the first day of the first month
+	 * @param checksum
+	 *            the expected checksum of the decoded data
+	 * @return the packed skipped and doubled days of all months and the first
+	 *         day of all months followed by the first day after the last
+	 *         month
+	 * @throws IllegalStateException
+	 *             if the decoded data does not match the checksum
+	 */
+	static int[][] decode(String[] chunks, int firstStartDay, long checksum) {
+		int length = 0;
+		for (String chunk : chunks) {
+			length += chunk.length() / CHARS_PER_MONTH;
+		}
+
+		int[] skipDouble = new int[length];
+		int[] startDay = new int[length + 1];
+		startDay[0] = firstStartDay;
+		int i = 0;
+		for (String chunk : chunks) {
+			for (int pos = 0; pos < chunk.length(); pos += CHARS_PER_MONTH) {
+				int value = 0;
+				for (int day = 0; day < DAYS_PER_MONTH; day++) {
+					value |= (chunk.charAt(pos + day) - '0') << (day * 5);
+				}
+				skipDouble[i] = value;
+				startDay[i + 1] = startDay[i]
+						+ (chunk.charAt(pos + DAYS_PER_MONTH) - '0');
+				i++;
+			}
+		}
+
+		if (checksum(skipDouble, startDay) != checksum) {
+			throw new IllegalStateException("Checksum of the generated month table does not match");
+		}
+		return new int[][] { skipDouble, startDay };
+	}
+
+	/**
+	 * calculate a CRC32 checksum over columns of the month table
+	 */
+	static long checksum(int[]... columns) {
+		CRC32 crc = new CRC32();
+		for (int[] column : columns) {
+			for (int value : column) {
+				crc.update(value >>> 24);
+				crc.update(value >>> 16);
+				crc.update(value >>> 8);
+				crc.update(value);
+			}
+		}
+		return crc.getValue();
+	}
+}
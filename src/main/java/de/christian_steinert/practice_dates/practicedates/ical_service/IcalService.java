@@ -61,9 +61,10 @@ public class IcalService {
      * @param request HTTP request object which triggered the current request. This object is used to determine the URL
      *                of the current application.
      * @param practiceTypes List of calendar ID / practice IDs whose content should be included in the .ics calendar data
+     * @param system name of the Tibetan calendar system that is used to calculate the practice dates
      * @return A string containing iCal calendar data for an .ics file
      */
-    public String getPracticeDatesAsIcal(HttpServletRequest request, ArrayList<PracticeInfo.PracticeType> practiceTypes) {
+    public String getPracticeDatesAsIcal(HttpServletRequest request, ArrayList<PracticeInfo.PracticeType> practiceTypes, String system) {
         var result = new StringBuilder();
 
         var calendarNames = practiceTypes.stream().map(x -> x.toString()).collect(Collectors.toList());
@@ -73,7 +74,10 @@ public class IcalService {
         var endDate = LocalDate.of(startDate.getYear() + 1, 12, 31);
 
         var calendars = calendarService.getCalendars();
-        var dates = datesService.getDateRangeInfo(startDate, endDate);
+        var dates = datesService.getPracticeDays(startDate, endDate, system, practiceTypes);
+
+        // the default system is left out of the URL so that existing subscriptions keep their URL
+        var systemParam = system.equals(PracticeDatesService.DEFAULT_CALENDAR_SYSTEM) ? "" : "&system=" + system;
 
         result.append("BEGIN:VCALENDAR\r\n");
         result.append("VERSION:2.0\r\n");
@@ -81,7 +85,7 @@ public class IcalService {
         result.append("X-WR-CALNAME:Practice Dates\r\n");
         result.append("REFRESH-INTERVAL;VALUE=DURATION:PT168H\r\n");
         result.append("METHOD:PUBLISH\r\n");
-        result.append(String.format("URL:%s://%s:%s/ical?calendars=%s\r\n", request.getScheme(), request.getServerName(), request.getServerPort(), calendarNamesStr));
+        result.append(String.format("URL:%s://%s:%s/ical?calendars=%s%s\r\n", request.getScheme(), request.getServerName(), request.getServerPort(), calendarNamesStr, systemParam));
 
         for (var date : dates) {
             for (var practice : date.getPractices()) {
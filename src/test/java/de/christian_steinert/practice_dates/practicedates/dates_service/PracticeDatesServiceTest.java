@@ -10,6 +10,9 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class PracticeDatesServiceTest {
@@ -34,6 +37,45 @@ class PracticeDatesServiceTest {
                 "getMonthInfo should yield identical results to getDateRangeInfo for all days of the respective month");
     }
 
+    /**
+     * Can the calendar system be selected by its name, and is the default system used if none is given?
+     */
+    @Test
+    void checkCalendarSystems() {
+        LocalDate from = LocalDate.of(2021, 12, 1);
+        LocalDate to = LocalDate.of(2022, 1, 17);
+
+        assertTrue(objUnderTest.isCalendarSystem("phugpa"));
+        assertFalse(objUnderTest.isCalendarSystem("unknown"));
+        assertEquals(objUnderTest.getDateRangeInfo(from, to),
+                objUnderTest.getDateRangeInfo(from, to, "phugpa"),
+                "getDateRangeInfo should use the Phugpa system if no system is given");
+        assertThrows(IllegalArgumentException.class, () -> objUnderTest.getDateRangeInfo(from, to, "unknown"));
+    }
+
+    /**
+     * Are the days shared between requests, and are equal practices on different days the same objects?
+     */
+    @Test
+    void isDayInfoShared() {
+        // a single day that is not part of a known year is calculated on its own
+        var uncached = objUnderTest.getDateRangeInfo(LocalDate.of(2011, 3, 13), LocalDate.of(2011, 3, 13)).get(0);
+
+        // once the whole year has been requested, its days are shared
+        objUnderTest.getDateRangeInfo(LocalDate.of(2011, 1, 1), LocalDate.of(2011, 12, 31));
+        var monthInfo = objUnderTest.getMonthInfo(2011, 3);
+        var dayInfo = objUnderTest.getDateRangeInfo(LocalDate.of(2011, 3, 13), LocalDate.of(2011, 3, 13)).get(0);
+        assertSame(monthInfo.get(12), dayInfo);
+        assertEquals(uncached, dayInfo);
+        assertThrows(UnsupportedOperationException.class, () -> dayInfo.getPractices().clear());
+
+        // the practices of the 15th day of the 1st Tibetan month of two years
+        var practices1 = objUnderTest.getDateRangeInfo(LocalDate.of(2011, 3, 19), LocalDate.of(2011, 3, 19)).get(0).getPractices();
+        var practices2 = objUnderTest.getDateRangeInfo(LocalDate.of(2012, 3, 8), LocalDate.of(2012, 3, 8)).get(0).getPractices();
+        assertEquals(practices1, practices2);
+        assertSame(practices1.get(0), practices2.get(0));
+    }
+
     /**
      * Helper method: Are the expected practices found on the a particular date?
      *
@@ -87,6 +129,62 @@ class PracticeDatesServiceTest {
                 "getDateRangeInfo for a period of days should yield the same result as for all of those days individually");
     }
 
+    /**
+     * Does the day store give the same days as the calculation on request, also for the years at the edges of the
+     * store?
+     */
+    @Test
+    void isDayStoreEqualToCalculation() {
+        var withStore = new PracticeDatesService();
+        withStore.setDayStoreEnabled(true);
+
+        var dateCalc = objUnderTest.getDateCalculation(PracticeDatesService.DEFAULT_CALENDAR_SYSTEM);
+        var firstYear = LocalDate.ofEpochDay(
+                dateCalc.getMonthTable(dateCalc.getFirstRabjung()).getStartDay(0)).getYear();
+        var lastMonths = dateCalc.getMonthTable(dateCalc.getLastRabjung());
+        var lastYear = LocalDate.ofEpochDay(lastMonths.getStartDay(lastMonths.size())).getYear();
+
+        for (int year = firstYear - 1; year <= lastYear + 1; year++) {
+            var from = LocalDate.of(year, 1, 1);
+            var to = LocalDate.of(year, 12, 31);
+            assertEquals(objUnderTest.getDateRangeInfo(from, to), withStore.getDateRangeInfo(from, to),
+                    "Different days in " + year);
+        }
+
+        withStore.setDayStoreEnabled(false);
+        assertEquals(objUnderTest.getMonthInfo(2025, 2), withStore.getMonthInfo(2025, 2));
+    }
+
+    /**
+     * Does getPracticeDays give the days of getDateRangeInfo that contain one of the practice types, with and without
+     * the day store?
+     */
+    @Test
+    void isGetPracticeDaysEqualToFilteredDateRange() {
+        var withStore = new PracticeDatesService();
+        withStore.setDayStoreEnabled(true);
+
+        var from = LocalDate.of(2020, 11, 15);
+        var to = LocalDate.of(2025, 3, 3);
+        var typeSets = List.of(List.of(PracticeType.TSOG), List.of(PracticeType.MEDICINE_BUDDHA, PracticeType.PRECEPTS),
+                List.of(PracticeType.OTHER, PracticeType.PROTECTOR_PUJA, PracticeType.OTHER), List.<PracticeType>of());
+
+        for (var practiceTypes : typeSets) {
+            var expected = objUnderTest.getDateRangeInfo(from, to).stream()
+                    .filter(day -> day.getPractices().stream().anyMatch(practice -> practiceTypes.contains(practice.getType())))
+                    .collect(Collectors.toList());
+
+            var system = PracticeDatesService.DEFAULT_CALENDAR_SYSTEM;
+            assertEquals(expected, objUnderTest.getPracticeDays(from, to, system, practiceTypes), "Without store: " + practiceTypes);
+            assertEquals(expected, withStore.getPracticeDays(from, to, system, practiceTypes), "With store: " + practiceTypes);
+        }
+
+        // the Gregorian practice day on July 6th is part of the index, too
+        var days = withStore.getPracticeDays(LocalDate.of(2021, 7, 1), LocalDate.of(2021, 7, 10),
+                PracticeDatesService.DEFAULT_CALENDAR_SYSTEM, List.of(PracticeType.OTHER));
+        assertEquals(List.of(6), days.stream().map(DayInfo::getDay).collect(Collectors.toList()));
+    }
+
     /**
      * Check if expected practices were determined correctly
      */
@@ -244,6 +342,18 @@ class PracticeDatesServiceTest {
         checkForExpectedPractices(2011, 3, 20);
         checkForExpectedPractices(2011, 3, 29, TSOG);
 
+        /* February 2025: the 30th day of the 12th Tibetan month is skipped, so its practices are done on the 29th */
+        checkForExpectedPractices(2025, 2, 27, PROT, PracticeType.MOON, PRE);
+        checkForExpectedPractices(2025, 2, 28, PRE, OTHER); // LOSAR
+
+        /* February 1977: the 1st day of the 1st Tibetan month is skipped, so Losar is on the 30th of the 12th month */
+        checkForExpectedPractices(1977, 2, 18, PracticeType.MOON, PRE, OTHER);
+        checkForExpectedPractices(1977, 2, 19, PRE);
+
+        /* July 6th: birthday of the Dalai Lama, which follows the Gregorian calendar */
+        checkForExpectedPractices(2021, 7, 5);
+        checkForExpectedPractices(2021, 7, 6, OTHER);
+        checkForExpectedPractices(2029, 7, 6, OTHER, TSOG);
 
     }
 
@@ -0,0 +1,136 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ArithmeticTibetanDateEngineTest {
+    ArithmeticTibetanDateEngine objUnderTest;
+    TibetanDateCalculation tableEngine;
+
+    /**
+     * Check some well-known dates
+     */
+    @Test
+    void checkKnownDates() {
+        // 1st day of the 1st month of the 2nd year of the 17th rabjung; this is the reference point of the calculation
+        assertEquals(new TibDate(17, 2, 1, 0, 1), objUnderTest.getTibetanDateForGregorianDate(LocalDate.of(1988, 2, 18)));
+        // Tibetan new year 2011
+        assertEquals(new TibDate(17, 24, 12, 0, 30), objUnderTest.getTibetanDateForGregorianDate(LocalDate.of(2011, 3, 4)));
+        assertEquals(LocalDate.of(2011, 3, 5).toEpochDay(), objUnderTest.getEpochDay(17, 25, 1, 0, 1));
+    }
+
+    /**
+     * Check both engines against dates that are published in Phugpa almanacs: Losar (1st day of the 1st month),
+     * Saga Dawa Duchen (15th day of the 4th month) and Lhabab Duchen (22nd day of the 9th month). Both engines share
+     * the calculation of the lunar days, so only dates that do not come from that calculation can catch an error in it.
+     */
+    @Test
+    void checkPublishedDates() {
+        // Gregorian date and Tibetan date (rabjung, year, month, month flag, day)
+        var published = new Object[][] {
+                { LocalDate.of(2008, 2, 7), new TibDate(17, 22, 1, 0, 1) },
+                { LocalDate.of(2012, 2, 22), new TibDate(17, 26, 1, 0, 1) },
+                { LocalDate.of(2014, 3, 2), new TibDate(17, 28, 1, 0, 1) },
+                { LocalDate.of(2017, 2, 27), new TibDate(17, 31, 1, 0, 1) },
+                // the 1st month of this year is doubled
+                { LocalDate.of(2019, 2, 5), new TibDate(17, 33, 1, 1, 1) },
+                { LocalDate.of(2022, 3, 3), new TibDate(17, 36, 1, 0, 1) },
+                { LocalDate.of(2024, 2, 10), new TibDate(17, 38, 1, 0, 1) },
+                { LocalDate.of(2025, 2, 28), new TibDate(17, 39, 1, 0, 1) },
+                { LocalDate.of(2026, 2, 18), new TibDate(17, 40, 1, 0, 1) },
+                { LocalDate.of(2019, 6, 17), new TibDate(17, 33, 4, 0, 15) },
+                { LocalDate.of(2021, 5, 26), new TibDate(17, 35, 4, 0, 15) },
+                { LocalDate.of(2023, 6, 4), new TibDate(17, 37, 4, 0, 15) },
+                { LocalDate.of(2024, 5, 23), new TibDate(17, 38, 4, 0, 15) },
+                { LocalDate.of(2022, 11, 15), new TibDate(17, 36, 9, 0, 22) },
+                { LocalDate.of(2023, 11, 4), new TibDate(17, 37, 9, 0, 22) },
+                { LocalDate.of(2024, 11, 22), new TibDate(17, 38, 9, 0, 22) },
+        };
+
+        for (var entry : published) {
+            var date = (LocalDate) entry[0];
+            var tibDate = (TibDate) entry[1];
+            for (TibetanDateEngine engine : new TibetanDateEngine[] { objUnderTest, tableEngine }) {
+                var name = engine.getClass().getSimpleName() + ": " + date;
+                assertEquals(tibDate, engine.getTibetanDateForGregorianDate(date), name);
+                assertEquals(date.toEpochDay(), engine.getEpochDay(tibDate.rabjung, tibDate.tibYear, tibDate.tibMonth,
+                        tibDate.monthFlag, tibDate.tibDay), name);
+            }
+        }
+    }
+
+    /**
+     * Does the arithmetic engine give the same Tibetan date as the table engine for each day of the frequently used
+     * rabjungs and a few rabjungs after them?
+     */
+    @Test
+    void isTibetanDateEqualToTableEngine() {
+        var from = tableEngine.getMonthTable(TibetanDateCalculation.RABJUNG_START).getStartDay(0);
+        var lastTable = tableEngine.getMonthTable(TibetanDateCalculation.RABJUNG_END + 5);
+        var to = lastTable.getStartDay(lastTable.size());
+
+        for (long epochDay = from; epochDay < to; epochDay++) {
+            assertEquals(tableEngine.getPackedTibetanDate(epochDay), objUnderTest.getPackedTibetanDate(epochDay),
+                    "Different Tibetan date for " + LocalDate.ofEpochDay(epochDay));
+        }
+    }
+
+    /**
+     * Does the arithmetic engine give the same Gregorian date as the table engine for each day of each month of the
+     * frequently used rabjungs?
+     */
+    @Test
+    void isEpochDayEqualToTableEngine() {
+        for (int rabjung = TibetanDateCalculation.RABJUNG_START; rabjung <= TibetanDateCalculation.RABJUNG_END; rabjung++) {
+            for (int tibYear = 1; tibYear <= 60; tibYear++) {
+                for (int tibMonth = 1; tibMonth <= 12; tibMonth++) {
+                    for (int monthFlag = 0; monthFlag <= 2; monthFlag++) {
+                        for (int tibDay = 1; tibDay <= 30; tibDay++) {
+                            assertEquals(tableEngine.getEpochDay(rabjung, tibYear, tibMonth, monthFlag, tibDay),
+                                    objUnderTest.getEpochDay(rabjung, tibYear, tibMonth, monthFlag, tibDay),
+                                    "Different Gregorian date for " + new TibDate(rabjung, tibYear, tibMonth, monthFlag, tibDay));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Can dates far away from the frequently used rabjungs be converted back and forth?
+     */
+    @Test
+    void checkDatesFarAway() {
+        var dates = new LocalDate[] { LocalDate.of(-1_000_000, 1, 1), LocalDate.of(-5000, 3, 1), LocalDate.of(100_000, 6, 30),
+                LocalDate.of(10_000_000, 12, 31) };
+        for (var date : dates) {
+            var packed = objUnderTest.getPackedTibetanDate(date.toEpochDay());
+            var epochDay = objUnderTest.getEpochDay(PackedTibDate.rabjung(packed), PackedTibDate.tibYear(packed),
+                    PackedTibDate.tibMonth(packed), PackedTibDate.monthFlag(packed), PackedTibDate.tibDay(packed));
+
+            assertEquals(date.toEpochDay() - (PackedTibDate.doubleDayFlag(packed) == 2 ? 1 : 0), epochDay,
+                    "No round trip for " + date + " (" + TibDate.of(packed) + ")");
+        }
+    }
+
+    /**
+     * Can the engines be selected by their names?
+     */
+    @Test
+    void checkEngineNames() {
+        assertEquals(ArithmeticTibetanDateEngine.class, TibetanDateEngine.forName(TibetanDateEngine.ARITHMETIC).getClass());
+        assertEquals(TibetanDateCalculation.class, TibetanDateEngine.forName(TibetanDateEngine.TABLE).getClass());
+        assertThrows(IllegalArgumentException.class, () -> TibetanDateEngine.forName("unknown"));
+    }
+
+    @BeforeEach
+    void setUp() {
+        objUnderTest = new ArithmeticTibetanDateEngine();
+        tableEngine = new TibetanDateCalculation();
+    }
+}
@@ -0,0 +1,118 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the calculation of the month table. These are no unit tests; run them with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion.TibetanDateCalculationBenchmark
+ * </pre>
+ * and use "-prof gc" (e.g. via org.openjdk.jmh.Main) to check the allocation rate.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TibetanDateCalculationBenchmark {
+    int[] a3 = new int[5];
+    int[] a4 = new int[5];
+    int[] a5 = new int[2];
+    int[] lunarDays = new int[31];
+    int zladag;
+    TibetanDateCalculation dateCalc;
+    long rangeStart = LocalDate.of(2020, 1, 1).toEpochDay();
+
+    @Setup
+    public void setUp() {
+        // the month with the reference point of the calculation: 1st month of year 2 of rabjung 17
+        zladag = 11887 - 11134;
+        dateCalc = new TibetanDateCalculation();
+        dateCalc.calculate_a_gzadhru(zladag, a3);
+        dateCalc.calculate_a_nyidhru(zladag, a4);
+        dateCalc.calculate_a_rilcha(zladag, a5);
+    }
+
+    /**
+     * the lunar weekdays of all days of one month
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void calca13aMonth(Blackhole blackhole) {
+        for (int d = 1; d <= 30; d++) {
+            blackhole.consume(dateCalc.calca13a(d, a3, a4, a5));
+        }
+    }
+
+    /**
+     * the lunar weekdays of all days of one month, calculated in one pass
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int[] computeMonthLunarDays() {
+        dateCalc.computeMonthLunarDays(zladag, lunarDays);
+        return lunarDays;
+    }
+
+    /**
+     * the complete month table without any precalculated data
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public TibetanMonthTable calculateMonthTable() {
+        return dateCalc.calculateMonthTable(false);
+    }
+
+    /**
+     * the Tibetan dates of ten years, each day converted on its own
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void packedDateRange(Blackhole blackhole) {
+        for (long epochDay = rangeStart; epochDay < rangeStart + 3653; epochDay++) {
+            blackhole.consume(dateCalc.getPackedTibetanDate(epochDay));
+        }
+    }
+
+    /**
+     * the Tibetan dates of ten years, walked through with a cursor
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void dayCursorRange(Blackhole blackhole) {
+        var cursor = dateCalc.getDayCursor(rangeStart);
+        for (int i = 0; i < 3653; i++) {
+            blackhole.consume(cursor.getPackedDate());
+            cursor.next();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TibetanDateCalculationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,512 @@
+package de.christian_steinert.practice_dates.practicedates.dates_service.tibetan_calendar_conversion;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TibetanDateCalculationTest {
+    TibetanDateCalculation objUnderTest;
+
+    /**
+     * Helper method: check the Tibetan date that is calculated for a Gregorian date
+     */
+    void checkTibetanDate(LocalDate date, int rabjung, int tibYear, int tibMonth, int monthFlag, int tibDay, int doubleDayFlag) {
+        var tibDate = objUnderTest.getTibetanDateForGregorianDate(date);
+
+        var expected = new TibDate(rabjung, tibYear, tibMonth, monthFlag, tibDay);
+        assertEquals(expected, tibDate, "Unexpected Tibetan date for " + date);
+        assertEquals(doubleDayFlag, tibDate.doubleDayFlag, "Unexpected double day flag for " + date);
+    }
+
+    /**
+     * Check some well-known dates
+     */
+    @Test
+    void checkKnownDates() {
+        // 1st day of the 1st month of the 2nd year of the 17th rabjung; this is the reference point of the calculation
+        checkTibetanDate(LocalDate.of(1988, 2, 18), 17, 2, 1, 0, 1, 0);
+        // Tibetan new year 2011
+        checkTibetanDate(LocalDate.of(2011, 3, 4), 17, 24, 12, 0, 30, 0);
+        checkTibetanDate(LocalDate.of(2011, 3, 5), 17, 25, 1, 0, 1, 0);
+    }
+
+    /**
+     * Dates outside of the supported range have no Tibetan date
+     */
+    @Test
+    void checkDatesOutOfRange() {
+        assertNull(objUnderTest.getTibetanDateForGregorianDate(LocalDate.of(-5_000_000, 1, 1)));
+        assertNull(objUnderTest.getTibetanDateForGregorianDate(LocalDate.of(5_000_000, 1, 1)));
+    }
+
+    /**
+     * Can dates far outside of the frequently used rabjungs be converted back and forth?
+     */
+    @Test
+    void checkDatesOutsideOfFrequentlyUsedRabjungs() {
+        // rabjungs before the 1st rabjung can only be reached from Gregorian dates
+        checkTibetanDate(LocalDate.of(1026, 12, 31), 0, 60, 12, 0, 14, 0);
+        assertEquals(-100, objUnderTest.getTibetanDateForGregorianDate(LocalDate.of(-5000, 3, 1)).rabjung);
+
+        var dates = new LocalDate[] { LocalDate.of(2227, 1, 1), LocalDate.of(2300, 1, 1), LocalDate.of(100_000, 6, 30) };
+        for (var date : dates) {
+            var tibDate = objUnderTest.getTibetanDateForGregorianDate(date);
+            var pairs = objUnderTest.getGregorianDateForTibetanDate(tibDate.rabjung, tibDate.tibYear,
+                    tibDate.tibMonth, tibDate.tibDay);
+
+            boolean found = false;
+            for (var pair : pairs) {
+                if ((pair.tibDate.monthFlag == tibDate.monthFlag) && (pair.westernDate != null)
+                        && tibDate.toString().equals(
+                                objUnderTest.getTibetanDateForGregorianDate(pair.westernDate).toString())) {
+                    found = true;
+                }
+            }
+            assertEquals(true, found, "No round trip for " + date + " (" + tibDate + ")");
+        }
+    }
+
+    /**
+     * Are the month tables of the rabjungs after the frequently used rabjungs consistent with a calculation of
+     * several rabjungs at once?
+     */
+    @Test
+    void isMonthTableOfRabjungEqualToMonthTableOfSeveralRabjungs() {
+        var months = objUnderTest.calculateMonthTable(21, 23, null);
+
+        int i = 0;
+        for (int rabjung = 21; rabjung <= 23; rabjung++) {
+            var segment = objUnderTest.getMonthTable(rabjung);
+            for (int j = 0; j < segment.size(); j++, i++) {
+                assertEquals(months.getMonthFlag(i), segment.getMonthFlag(j));
+                assertEquals(months.getPackedSkippedAndDoubled(i), segment.getPackedSkippedAndDoubled(j));
+                assertEquals(months.getStartDay(i), segment.getStartDay(j), "Different start of month " + i);
+            }
+        }
+        assertEquals(months.size(), i);
+    }
+
+    /**
+     * Does the conversion of LocalDate objects give the same result as the conversion of Date objects?
+     */
+    @Test
+    void isLocalDateConversionEqualToDateConversion() {
+        var date = LocalDate.of(2019, 1, 1);
+        var to = LocalDate.of(2022, 12, 31);
+
+        while (!date.isAfter(to)) {
+            var dateObj = Date.from(date.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant());
+            var expected = objUnderTest.getTibetanDateForGregorianDate(dateObj);
+            var tibDate = objUnderTest.getTibetanDateForGregorianDate(date);
+
+            assertEquals(expected.toString(), tibDate.toString(), "Different Tibetan date for " + date);
+            date = date.plusDays(1);
+        }
+    }
+
+    /**
+     * Does the packed result contain the same information as the TibDate object?
+     */
+    @Test
+    void isPackedDateEqualToTibDate() {
+        var date = LocalDate.of(2010, 12, 1);
+        var to = LocalDate.of(2011, 3, 31);
+
+        while (!date.isAfter(to)) {
+            var packed = objUnderTest.getPackedTibetanDate(date.toEpochDay());
+            var tibDate = objUnderTest.getTibetanDateForGregorianDate(date);
+
+            assertEquals(tibDate.rabjung, PackedTibDate.rabjung(packed));
+            assertEquals(tibDate.tibYear, PackedTibDate.tibYear(packed));
+            assertEquals(tibDate.tibMonth, PackedTibDate.tibMonth(packed));
+            assertEquals(tibDate.monthFlag, PackedTibDate.monthFlag(packed));
+            assertEquals(tibDate.tibDay, PackedTibDate.tibDay(packed));
+            assertEquals(tibDate.doubleDayFlag, PackedTibDate.doubleDayFlag(packed));
+            date = date.plusDays(1);
+        }
+    }
+
+    /**
+     * Are Tibetan dates shared and can they be packed and unpacked without loss?
+     */
+    @Test
+    void isTibDateSharedAndPackable() {
+        var tibDate = TibDate.of(-3, 60, 12, 2, 30, 2, false);
+        assertSame(tibDate, TibDate.of(-3, 60, 12, 2, 30, 2, false));
+        assertSame(tibDate, TibDate.of(tibDate.pack()));
+        assertEquals(tibDate.toString(), new TibDate(-3, 60, 12, 2, 30, 2, false).toString());
+
+        var skipped = TibDate.of(17, 2, 1, 0, 16, 0, true);
+        assertEquals(true, skipped.isSkippedDay);
+        assertEquals(skipped.toString(), TibDate.of(skipped.pack()).toString());
+
+        // numbers that do not fit into a packed date are kept as they are
+        assertEquals(40, TibDate.of(17, 2, 1, 0, 40, 0, false).tibDay);
+        assertNull(TibDate.of(PackedTibDate.NONE));
+    }
+
+    /**
+     * Is each Tibetan date of a Gregorian date converted back to the same Gregorian date? This includes months in
+     * which a doubled day comes before a skipped day.
+     */
+    @Test
+    void isPackedDateEqualToGregorianDateForTibetanDate() {
+        var date = LocalDate.of(2000, 1, 1);
+        var to = LocalDate.of(2030, 12, 31);
+
+        while (!date.isAfter(to)) {
+            var tibDate = objUnderTest.getTibetanDateForGregorianDate(date);
+            var pairs = objUnderTest.getGregorianDateForTibetanDate(tibDate.rabjung, tibDate.tibYear,
+                    tibDate.tibMonth, tibDate.tibDay);
+
+            boolean found = false;
+            for (var pair : pairs) {
+                if ((pair.tibDate.monthFlag == tibDate.monthFlag)
+                        && (pair.tibDate.doubleDayFlag == tibDate.doubleDayFlag) && (pair.westernDate != null)) {
+                    assertEquals(date, pair.westernDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate(),
+                            "Different Gregorian date for " + tibDate);
+                    found = true;
+                }
+            }
+            assertEquals(true, found, "No Gregorian date for " + tibDate + " (" + date + ")");
+            date = date.plusDays(1);
+        }
+    }
+
+    /**
+     * Does a parallel stream of a wildcard query give the same dates in the same order as a sequential stream?
+     */
+    @Test
+    void isParallelStreamEqualToSequentialStream() {
+        var queries = new int[][] { { -1, -1, -1, 15 }, { 17, -1, -1, -1 }, { 20, 60, 12, -1 } };
+        for (var query : queries) {
+            var expected = objUnderTest.getGregorianDateForTibetanDate(query[0], query[1], query[2], query[3]);
+            var result = objUnderTest.streamGregorianDatesForTibetanDate(query[0], query[1], query[2], query[3])
+                    .parallel().toArray(DatePair[]::new);
+
+            assertEquals(expected.length, result.length, "Different number of dates for " + Arrays.toString(query));
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].tibDate.toString(), result[i].tibDate.toString());
+                assertEquals(expected[i].westernDate, result[i].westernDate);
+            }
+        }
+    }
+
+    /**
+     * Does a limited stream of a query with wildcards only contain the first dates?
+     */
+    @Test
+    void checkLimitedStream() {
+        var dates = objUnderTest.streamGregorianDatesForTibetanDate(-1, -1, -1, -1).limit(3)
+                .toArray(DatePair[]::new);
+
+        assertEquals(3, dates.length);
+        assertEquals(new TibDate(1, 1, 1, 0, 1), dates[0].tibDate);
+        assertEquals(new TibDate(1, 1, 1, 0, 3), dates[2].tibDate);
+    }
+
+    /**
+     * Does the cursor give the same Tibetan dates as the conversion of single days? The range includes the change
+     * to the rabjungs after the frequently used rabjungs.
+     */
+    @Test
+    void isDayCursorEqualToSingleDays() {
+        var from = LocalDate.of(1950, 1, 1).toEpochDay();
+        var to = LocalDate.of(2240, 12, 31).toEpochDay();
+
+        var cursor = objUnderTest.getDayCursor(from);
+        for (long epochDay = from; epochDay <= to; epochDay++) {
+            assertEquals(epochDay, cursor.getEpochDay());
+            assertEquals(objUnderTest.getPackedTibetanDate(epochDay), cursor.getPackedDate(),
+                    "Different Tibetan date for " + LocalDate.ofEpochDay(epochDay));
+            cursor.next();
+        }
+    }
+
+    /**
+     * Does the cursor report the Tibetan day that is skipped after each day, also if it is the 1st day of the next
+     * month?
+     */
+    @Test
+    void checkSkippedDaysOfCursor() {
+        // the 1st day of the 1st month of year 51 of rabjung 16 is skipped, so 1977-02-18 (the 30th day of the 12th
+        // month) is followed by the 2nd day of the new year
+        var cursor = objUnderTest.getDayCursor(LocalDate.of(1977, 2, 18).toEpochDay());
+        assertEquals(PackedTibDate.pack(16, 51, 1, 0, 1, 0, true), cursor.getSkippedDate());
+        cursor.next();
+        assertEquals(PackedTibDate.NONE, cursor.getSkippedDate());
+
+        // compare with the conversion of single days
+        var from = LocalDate.of(1950, 1, 1).toEpochDay();
+        var to = LocalDate.of(2240, 12, 31).toEpochDay();
+        cursor = objUnderTest.getDayCursor(from);
+        for (long epochDay = from; epochDay <= to; epochDay++) {
+            var current = objUnderTest.getPackedTibetanDate(epochDay);
+            var next = objUnderTest.getPackedTibetanDate(epochDay + 1);
+            var expected = PackedTibDate.NONE;
+            if (PackedTibDate.doubleDayFlag(next) == 2) {
+                // the next day repeats the current day
+            } else if (isSameMonth(current, next)) {
+                if (PackedTibDate.tibDay(next) == PackedTibDate.tibDay(current) + 2) {
+                    expected = skippedDay(current, PackedTibDate.tibDay(current) + 1);
+                }
+            } else if (PackedTibDate.tibDay(current) == 29) {
+                expected = skippedDay(current, 30);
+            } else if (PackedTibDate.tibDay(next) == 2) {
+                expected = skippedDay(next, 1);
+            }
+            assertEquals(expected, cursor.getSkippedDate(), "Different skipped day after " + LocalDate.ofEpochDay(epochDay));
+            cursor.next();
+        }
+    }
+
+    /**
+     * Helper method: do two packed dates belong to the same Tibetan month?
+     */
+    private static boolean isSameMonth(long packed1, long packed2) {
+        return PackedTibDate.rabjung(packed1) == PackedTibDate.rabjung(packed2)
+                && PackedTibDate.tibYear(packed1) == PackedTibDate.tibYear(packed2)
+                && PackedTibDate.tibMonth(packed1) == PackedTibDate.tibMonth(packed2)
+                && PackedTibDate.monthFlag(packed1) == PackedTibDate.monthFlag(packed2);
+    }
+
+    /**
+     * Helper method: the packed date of a skipped day in the month of a packed date
+     */
+    private static long skippedDay(long packedMonth, int tibDay) {
+        return PackedTibDate.pack(PackedTibDate.rabjung(packedMonth), PackedTibDate.tibYear(packedMonth),
+                PackedTibDate.tibMonth(packedMonth), PackedTibDate.monthFlag(packedMonth), tibDay, 0, true);
+    }
+
+    /**
+     * Does the shape of each month give the same Tibetan days as counting the days of the month, does it lead back
+     * from each Tibetan day to its Gregorian day, and do months with the same skipped and doubled days share their
+     * shape?
+     */
+    @Test
+    void checkMonthShapes() {
+        for (int rabjung = TibetanDateCalculation.RABJUNG_START; rabjung <= TibetanDateCalculation.RABJUNG_END; rabjung++) {
+            var months = objUnderTest.getMonthTable(rabjung);
+            for (int i = 0; i < months.size(); i++) {
+                var packed = months.getPackedSkippedAndDoubled(i);
+                assertEquals(packed, TibetanMonthShapes.getCurrent().getPackedSkippedAndDoubled(TibetanMonthShapes.getId(packed)));
+
+                int day = 0;
+                for (int offset = 0; offset < months.getMonthLength(i); offset++) {
+                    day = TibetanMonthShapes.nextDay(day, months.getSkip1(i), months.getSkip2(i), months.getDouble1(i),
+                            months.getDouble2(i));
+                    assertEquals(day, months.getDay(i, offset), "Different day " + offset + " of month " + i + " of rabjung " + rabjung);
+                }
+
+                for (int tibDay = 1; tibDay <= 30; tibDay++) {
+                    if (tibDay != months.getSkip1(i) && tibDay != months.getSkip2(i)) {
+                        day = months.getDay(i, months.getDayOffset(i, tibDay));
+                        assertEquals(tibDay, TibetanMonthShapes.getTibDay(day));
+                        assertEquals(tibDay == months.getDouble1(i) || tibDay == months.getDouble2(i) ? 1 : 0,
+                                TibetanMonthShapes.getDoubleDayFlag(day));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Does the month table that was generated during the build match the table that is calculated at runtime?
+     */
+    @Test
+    void isGeneratedMonthTableEqualToCalculatedTable() {
+        boolean isGenerated;
+        try {
+            Class.forName(TibetanMonthTableGenerator.GENERATED_CLASS_NAME);
+            isGenerated = true;
+        } catch (ClassNotFoundException e) {
+            isGenerated = false;
+        }
+        assumeTrue(isGenerated, "The month table is only generated by the maven build");
+
+        var calculated = objUnderTest.calculateMonthTable(false);
+        var generated = objUnderTest.calculateMonthTable(true);
+
+        assertEquals(calculated.size(), generated.size(), "The generated table should contain all months");
+        for (int i = 0; i <= calculated.size(); i++) {
+            assertEquals(calculated.getStartDay(i), generated.getStartDay(i), "Different start of month " + i);
+        }
+        for (int i = 0; i < calculated.size(); i++) {
+            assertEquals(calculated.getPackedSkippedAndDoubled(i), generated.getPackedSkippedAndDoubled(i),
+                    "Different skipped or doubled days in month " + i);
+        }
+    }
+
+    /**
+     * Can the month table be written to a file and read back? Is a damaged file rejected?
+     */
+    @Test
+    void isMonthTableFileEqualToMonthTable() throws IOException {
+        var months = objUnderTest.calculateMonthTable(false);
+        var file = Files.createTempFile("monthTable", ".bin");
+        try {
+            TibetanMonthTableFile.write(months, file);
+            var read = TibetanMonthTableFile.read(file);
+
+            assertEquals(months.getFirstZladag(), read.getFirstZladag());
+            assertEquals(months.size(), read.size());
+            for (int i = 0; i < months.size(); i++) {
+                assertEquals(months.getPackedSkippedAndDoubled(i), read.getPackedSkippedAndDoubled(i),
+                        "Different skipped or doubled days in month " + i + " of the file");
+            }
+            for (int i = 0; i <= months.size(); i++) {
+                assertEquals(months.getStartDay(i), read.getStartDay(i), "Different start of month " + i + " of the file");
+            }
+
+            // a table that is calculated with the data of the file is equal to the calculated table
+            var fromFile = objUnderTest.calculateMonthTable(objUnderTest.getFirstRabjung(),
+                    objUnderTest.getLastRabjung(), read);
+            assertEquals(months.size(), fromFile.size());
+            for (int i = 0; i <= months.size(); i++) {
+                assertEquals(months.getStartDay(i), fromFile.getStartDay(i), "Different start of month " + i);
+            }
+
+            // change one byte of the month data
+            var content = Files.readAllBytes(file);
+            content[100] ^= 1;
+            Files.write(file, content);
+            assertThrows(IOException.class, () -> TibetanMonthTableFile.read(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Does the calculation of a whole month give the same lunar weekdays as the calculation of single days?
+     */
+    @Test
+    void isMonthLunarDaysEqualToSingleDays() {
+        var a3 = new int[5];
+        var a4 = new int[5];
+        var a5 = new int[2];
+        var lunarDays = new int[31];
+
+        for (int zladag = -12000; zladag <= 4000; zladag += 7) {
+            objUnderTest.computeMonthLunarDays(zladag, lunarDays);
+
+            objUnderTest.calculate_a_gzadhru(zladag - 1, a3);
+            objUnderTest.calculate_a_nyidhru(zladag - 1, a4);
+            objUnderTest.calculate_a_rilcha(zladag - 1, a5);
+            assertEquals(objUnderTest.calca13a(30, a3, a4, a5), lunarDays[0], "zladag " + zladag);
+
+            objUnderTest.calculate_a_gzadhru(zladag, a3);
+            objUnderTest.calculate_a_nyidhru(zladag, a4);
+            objUnderTest.calculate_a_rilcha(zladag, a5);
+            for (int d = 1; d <= 30; d++) {
+                assertEquals(objUnderTest.calca13a(d, a3, a4, a5), lunarDays[d],
+                        "zladag " + zladag + ", day " + d);
+            }
+        }
+    }
+
+    /**
+     * Are the month tables of the single rabjungs equal to the table of all months?
+     */
+    @Test
+    void isMonthTableOfRabjungEqualToMonthTable() {
+        var months = objUnderTest.calculateMonthTable(false);
+
+        int i = 0;
+        for (int rabjung = TibetanDateCalculation.RABJUNG_START; rabjung <= TibetanDateCalculation.RABJUNG_END; rabjung++) {
+            var segment = objUnderTest.getMonthTable(rabjung);
+            assertEquals(months.getZladag(i), segment.getZladag(0), "Unexpected first month of rabjung " + rabjung);
+            for (int j = 0; j < segment.size(); j++, i++) {
+                assertEquals(months.getRabjung(i), segment.getRabjung(j));
+                assertEquals(months.getTibYear(i), segment.getTibYear(j));
+                assertEquals(months.getTibMonth(i), segment.getTibMonth(j));
+                assertEquals(months.getMonthFlag(i), segment.getMonthFlag(j));
+                assertEquals(months.getPackedSkippedAndDoubled(i), segment.getPackedSkippedAndDoubled(j));
+                assertEquals(months.getStartDay(i), segment.getStartDay(j), "Different start of month " + i);
+            }
+            assertEquals(months.getStartDay(i), segment.getStartDay(segment.size()), "Different end of rabjung " + rabjung);
+        }
+        assertEquals(months.size(), i, "The tables of all rabjungs should contain all months");
+    }
+
+    /**
+     * Are the month tables replaced by a reload, and do conversions that started before the reload continue to work?
+     */
+    @Test
+    void checkReloadOfMonthTables() {
+        var before = objUnderTest.getMonthTable(17);
+        var cursor = objUnderTest.getDayCursor(LocalDate.of(2011, 3, 4).toEpochDay());
+
+        objUnderTest.reloadMonthTables().join();
+
+        assertEquals(false, before == objUnderTest.getMonthTable(17), "The month tables should have been replaced");
+        checkKnownDates();
+        cursor.next();
+        assertEquals(25, PackedTibDate.tibYear(cursor.getPackedDate()));
+    }
+
+    /**
+     * Does each calculation use the parameters and month tables of its own calendar system?
+     */
+    @Test
+    void areCalendarSystemsIndependent() {
+        // the Phugpa system with its reference month one day later
+        var shiftedParameters = new TibetanCalendarParameters.Builder(new PhugpaCalendarSystem().getParameters())
+                .referenceMonth(17, 2, 1, 0, LocalDate.of(1988, 2, 19))
+                .build();
+        var shifted = new TibetanCalendarSystem() {
+            @Override
+            public String getName() {
+                return "shifted";
+            }
+
+            @Override
+            public TibetanCalendarParameters getParameters() {
+                return shiftedParameters;
+            }
+        }.createCalculation();
+        var before = objUnderTest.getMonthTable(17);
+
+        var from = LocalDate.of(1987, 1, 1).toEpochDay();
+        var to = LocalDate.of(2030, 1, 1).toEpochDay();
+        for (long day = from; day <= to; day++) {
+            assertEquals(objUnderTest.getPackedTibetanDate(day), shifted.getPackedTibetanDate(day + 1),
+                    "Unexpected Tibetan date for " + LocalDate.ofEpochDay(day + 1));
+        }
+
+        shifted.reloadMonthTables().join();
+        assertSame(before, objUnderTest.getMonthTable(17), "The month tables of other calculations should be kept");
+        checkKnownDates();
+    }
+
+    /**
+     * Are the registered calendar systems found by their names?
+     */
+    @Test
+    void areCalendarSystemsRegistered() {
+        assertTrue(TibetanCalendarSystem.getNames().contains(TibetanCalendarSystem.PHUGPA));
+        assertEquals(PhugpaCalendarSystem.class, TibetanCalendarSystem.forName(TibetanCalendarSystem.PHUGPA).getClass());
+        assertThrows(IllegalArgumentException.class, () -> TibetanCalendarSystem.forName("unknown"));
+
+        var day = LocalDate.of(2022, 3, 3).toEpochDay();
+        assertEquals(objUnderTest.getPackedTibetanDate(day),
+                TibetanCalendarSystem.forName(TibetanCalendarSystem.PHUGPA).createCalculation().getPackedTibetanDate(day));
+    }
+
+    @BeforeEach
+    void setUp() {
+        objUnderTest = new TibetanDateCalculation();
+    }
+}